@@ -0,0 +1,29 @@
+package org.example;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Запуск тестов JMH с сохранением результатов в JSON.
+ * Если формат результатов не задан аргументами (-rf), результаты записываются
+ * в results/jmh-&lt;дата-время&gt;.json, чтобы их можно было сравнивать между запусками.
+ * Остальные аргументы передаются JMH без изменений.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf") && !arguments.contains("-h") && !arguments.contains("-l")) {
+            File directory = new File(System.getProperty("school.results", "benchmarks/results"));
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("Не удалось создать каталог " + directory);
+            }
+            String name = "jmh-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".json";
+            arguments.addAll(Arrays.asList("-rf", "json", "-rff", new File(directory, name).getPath()));
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Массовое удаление выбранных строк (deleteSelectedStudents): 1% случайных строк за один проход.
+ * Модель с индексом пересоздаётся перед каждым вызовом.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DeleteBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int students;
+
+    private RecordSnapshot source;
+    private int[] selectedRows;
+    private RecordTableModel model;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        RecordStore teacherStore = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        RosterGenerator.generate(students, teacherStore, studentStore);
+        source = studentStore.snapshot();
+        Random random = new Random(42);
+        selectedRows = random.ints(students / 100, 0, students).toArray();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        RecordStore store = RecordStore.forStudents();
+        for (int row = 0; row < source.size(); row++) {
+            store.add(source.getRow(row));
+        }
+        model = new RecordTableModel(store, new String[]{"ФИО", "Класс", "Успеваемость"});
+    }
+
+    @Benchmark
+    public int removeSelected() {
+        return model.removeRows(selectedRows);
+    }
+}
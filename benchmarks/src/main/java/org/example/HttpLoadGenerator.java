@@ -0,0 +1,243 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Нагрузочный клиент встроенного HTTP-сервиса ({@link SchoolHttpServer}).
+ * Несколько клиентов в течение заданного времени без пауз выполняют поиск учеников, а заданная доля
+ * запросов — добавление и удаление (удаление по номеру строки и версии из предшествующего поиска,
+ * ответ 409 считается ожидаемым конфликтом, а не ошибкой). В конце выводятся пропускная способность,
+ * коды ответов и задержки по видам запросов.
+ * <p>
+ * Без параметра --url сервис запускается в этом же процессе поверх синтетического списка
+ * RosterGenerator, поэтому измерение воспроизводится одной командой:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.example.HttpLoadGenerator --students 200000 --clients 8 --writes 10
+ * java -cp benchmarks/target/benchmarks.jar org.example.HttpLoadGenerator --url http://127.0.0.1:8080 --duration 60
+ * </pre>
+ * Код завершения 1, если были ответы 5xx или ошибки соединения.
+ */
+public class HttpLoadGenerator {
+    private static final Pattern ROW = Pattern.compile("\"row\":(\\d+)");
+    private static final Pattern VERSION = Pattern.compile("\"version\":(\\d+)");
+    private static final String[] QUERIES = {"ов", "петров", "иван", "сергеевич", "козлов мак", "никитин"};
+    private static final String[] LETTERS = {"А", "Б", "В", "Г"};
+
+    /**
+     * Вид запроса.
+     */
+    enum Operation {
+        SEARCH, ADD, DELETE, REPORT
+    }
+
+    /**
+     * Задержки и коды ответов одного клиента; объединяются после завершения.
+     */
+    static final class Stats {
+        final EnumMap<Operation, List<Long>> latencies = new EnumMap<>(Operation.class);
+        final Map<Integer, Integer> statuses = new HashMap<>();
+        int failures;
+
+        void record(Operation operation, long nanos, int status) {
+            latencies.computeIfAbsent(operation, k -> new ArrayList<>()).add(nanos);
+            statuses.merge(status, 1, Integer::sum);
+        }
+
+        void merge(Stats other) {
+            other.latencies.forEach((operation, values) ->
+                    latencies.computeIfAbsent(operation, k -> new ArrayList<>()).addAll(values));
+            other.statuses.forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+            failures += other.failures;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final int writePercent;
+    private final int reportPercent;
+
+    HttpLoadGenerator(String baseUrl, int writePercent, int reportPercent) {
+        this.baseUrl = baseUrl;
+        this.writePercent = writePercent;
+        this.reportPercent = reportPercent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("Использование: HttpLoadGenerator [--url URL | --students N] [--clients N]"
+                        + " [--duration с] [--warmup с] [--writes %] [--reports %]");
+                System.exit(2);
+            }
+            options.put(args[i], args[++i]);
+        }
+        int clients = Integer.parseInt(options.getOrDefault("--clients", "8"));
+        int duration = Integer.parseInt(options.getOrDefault("--duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("--warmup", "5"));
+        int writes = Integer.parseInt(options.getOrDefault("--writes", "10"));
+        int reports = Integer.parseInt(options.getOrDefault("--reports", "0"));
+
+        SchoolHttpServer server = null;
+        ExecutorService owner = null;
+        String url = options.get("--url");
+        if (url == null) {
+            int students = Integer.parseInt(options.getOrDefault("--students", "200000"));
+            RecordStore teacherStore = RecordStore.forTeachers();
+            RecordStore studentStore = RecordStore.forStudents();
+            RosterGenerator.generate(students, teacherStore, studentStore);
+            // Как в пакетной команде serve: изменения выполняет один поток-владелец данных
+            owner = Executors.newSingleThreadExecutor(r -> new Thread(r, "DataOwnerThread"));
+            server = new SchoolHttpServer(
+                    new RecordTableModel(teacherStore, new String[]{"ФИО", "Предмет", "Классы"}),
+                    new RecordTableModel(studentStore, new String[]{"ФИО", "Класс", "Успеваемость"}),
+                    owner, null, new ReportTemplateCache(), new ReportResultCache(),
+                    options.getOrDefault("--template", "lab_10.jrxml"));
+            server.start(0);
+            url = "http://127.0.0.1:" + server.getPort();
+            System.out.println("Сервис запущен на " + url + ", учеников: " + students);
+        }
+
+        try {
+            HttpLoadGenerator generator = new HttpLoadGenerator(url, writes, reports);
+            if (warmup > 0) {
+                generator.run(clients, TimeUnit.SECONDS.toNanos(warmup));
+            }
+            long started = System.nanoTime();
+            Stats stats = generator.run(clients, TimeUnit.SECONDS.toNanos(duration));
+            double seconds = (System.nanoTime() - started) / 1e9;
+            print(stats, seconds, clients, writes, reports);
+            boolean failed = stats.failures > 0 || stats.statuses.keySet().stream().anyMatch(status -> status >= 500);
+            System.exit(failed ? 1 : 0);
+        } finally {
+            if (server != null) {
+                server.stop();
+                owner.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Запускает клиентов на указанное время и собирает их статистику.
+     */
+    Stats run(int clients, long nanos) throws Exception {
+        long deadline = System.nanoTime() + nanos;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<Stats>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                long seed = i;
+                futures.add(pool.submit(() -> client(new Random(seed), deadline)));
+            }
+            Stats total = new Stats();
+            for (Future<Stats> future : futures) {
+                total.merge(future.get());
+            }
+            return total;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Stats client(Random random, long deadline) {
+        Stats stats = new Stats();
+        while (System.nanoTime() < deadline) {
+            int dice = random.nextInt(100);
+            try {
+                if (dice < reportPercent) {
+                    request(stats, Operation.REPORT, HttpRequest.newBuilder(uri("/api/report?format=csv")).GET());
+                } else if (dice < reportPercent + writePercent) {
+                    if (random.nextBoolean()) {
+                        String className = (1 + random.nextInt(11)) + LETTERS[random.nextInt(LETTERS.length)];
+                        String form = "name=" + encode(RosterGenerator.fullName(random)) + "&class=" + encode(className)
+                                + "&performance=" + (2 + random.nextInt(4));
+                        request(stats, Operation.ADD, HttpRequest.newBuilder(uri("/api/students"))
+                                .header("Content-Type", "application/x-www-form-urlencoded")
+                                .POST(HttpRequest.BodyPublishers.ofString(form)));
+                    } else {
+                        delete(stats, random);
+                    }
+                } else {
+                    String query = QUERIES[random.nextInt(QUERIES.length)];
+                    request(stats, Operation.SEARCH, HttpRequest.newBuilder(
+                            uri("/api/students?column=name&limit=100&q=" + encode(query))).GET());
+                }
+            } catch (IOException e) {
+                stats.failures++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Удаление строки, найденной поиском, с версией данных этого поиска.
+     */
+    private void delete(Stats stats, Random random) throws IOException, InterruptedException {
+        String found = request(stats, Operation.SEARCH, HttpRequest.newBuilder(
+                uri("/api/students?column=class&prefix=true&limit=1&q=" + (1 + random.nextInt(11)))).GET());
+        Matcher row = ROW.matcher(found);
+        Matcher version = VERSION.matcher(found);
+        if (row.find() && version.find()) {
+            request(stats, Operation.DELETE, HttpRequest.newBuilder(
+                    uri("/api/students?row=" + row.group(1) + "&version=" + version.group(1))).DELETE());
+        }
+    }
+
+    private String request(Stats stats, Operation operation, HttpRequest.Builder request) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        HttpResponse<String> response = client.send(request.timeout(Duration.ofSeconds(60)).build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        stats.record(operation, System.nanoTime() - started, response.statusCode());
+        return response.body();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void print(Stats stats, double seconds, int clients, int writes, int reports) {
+        long requests = stats.statuses.values().stream().mapToLong(Integer::longValue).sum();
+        System.out.printf("Клиентов: %d, записей: %d%%, отчётов: %d%%, время: %.1f с%n", clients, writes, reports, seconds);
+        System.out.printf("Запросов: %d (%.1f в секунду), ошибок соединения: %d%n", requests, requests / seconds, stats.failures);
+        System.out.println("Коды ответов: " + stats.statuses);
+        for (Map.Entry<Operation, List<Long>> entry : stats.latencies.entrySet()) {
+            long[] values = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(values);
+            System.out.printf("%-7s n=%-8d p50=%7.2f мс  p95=%7.2f мс  p99=%7.2f мс  max=%7.2f мс%n", entry.getKey(),
+                    values.length, percentile(values, 50), percentile(values, 95), percentile(values, 99),
+                    values[values.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Загрузка списка школы: потоковый StAX-разбор, параллельный разбор по частям
+ * и чтение двоичного снимка (логика loadDataFromFile).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int students;
+
+    private File xmlFile;
+    private File snapshotFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        xmlFile = RosterGenerator.roster(students);
+        snapshotFile = File.createTempFile("roster-" + students, "." + BinarySnapshot.EXTENSION);
+        snapshotFile.deleteOnExit();
+        RecordStore teachers = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        new XmlStreamLoader().load(xmlFile, sink(teachers, studentStore), null);
+        BinarySnapshot.write(snapshotFile, teachers.snapshot(), studentStore.snapshot());
+    }
+
+    @Benchmark
+    public RecordStore streamXml() throws Exception {
+        RecordStore teachers = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        new XmlStreamLoader().load(xmlFile, sink(teachers, studentStore), null);
+        return studentStore;
+    }
+
+    @Benchmark
+    public RecordStore parallelXml() throws Exception {
+        RecordStore teachers = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        new ParallelXmlLoader().load(xmlFile, sink(teachers, studentStore), null);
+        return studentStore;
+    }
+
+    @Benchmark
+    public RecordStore snapshot() throws Exception {
+        RecordStore teachers = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        BinarySnapshot.read(snapshotFile, sink(teachers, studentStore), null, null);
+        return studentStore;
+    }
+
+    static XmlStreamLoader.RecordSink sink(RecordStore teachers, RecordStore students) {
+        return new XmlStreamLoader.RecordSink() {
+            @Override
+            public void teacher(String[] teacher) {
+                teachers.add(teacher);
+            }
+
+            @Override
+            public void student(String[] student) {
+                students.add(student);
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Отчёт lab_10.jrxml: компиляция шаблона, заполнение и экспорт в PDF.
+ * Путь к шаблону задаётся свойством school.template (по умолчанию lab_10.jrxml в текущем каталоге).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportBenchmark {
+    @Param({"10000", "100000"})
+    public int students;
+
+    private String templatePath;
+    private JasperReport report;
+    private RecordSnapshot studentSnapshot;
+    private JasperPrint print;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        templatePath = System.getProperty("school.template", "lab_10.jrxml");
+        report = JasperCompileManager.compileReport(templatePath);
+        report.removeProperty(ReportTemplateCache.DATA_ADAPTER_PROPERTY);
+        RecordStore teacherStore = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        RosterGenerator.generate(students, teacherStore, studentStore);
+        studentSnapshot = studentStore.snapshot();
+        print = JasperFillManager.fillReport(report, new HashMap<>(), new StudentDataSource(studentSnapshot));
+    }
+
+    @Benchmark
+    public JasperReport compile() throws Exception {
+        return JasperCompileManager.compileReport(templatePath);
+    }
+
+    @Benchmark
+    public JasperPrint fill() throws Exception {
+        return JasperFillManager.fillReport(report, new HashMap<>(), new StudentDataSource(studentSnapshot));
+    }
+
+    @Benchmark
+    public int fillVirtualized() throws Exception {
+        JRSwapFileVirtualizer virtualizer = new JRSwapFileVirtualizer(ReportVirtualizers.PAGE_CACHE_SIZE,
+                new net.sf.jasperreports.engine.util.JRSwapFile(System.getProperty("java.io.tmpdir"), 4096, 256), true);
+        try {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            return JasperFillManager.fillReport(report, parameters, new StudentDataSource(studentSnapshot)).getPages().size();
+        } finally {
+            virtualizer.cleanup();
+        }
+    }
+
+    @Benchmark
+    public byte[] exportPdf() throws Exception {
+        return ReportExporter.toBytes(print, "PDF");
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Генератор синтетических списков школы для тестов производительности.
+ * Создаёт XML в формате программы: учителей в 20 раз меньше, чем учеников,
+ * ФИО составляются из распространённых фамилий, имён и отчеств, классы — с 1А по 11Г.
+ * Один и тот же размер всегда даёт один и тот же файл.
+ */
+public class RosterGenerator {
+    private static final String[] SURNAMES = {
+            "Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов", "Михайлов",
+            "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов", "Егоров",
+            "Павлов", "Козлов", "Степанов", "Николаев", "Орлов", "Андреев", "Макаров", "Никитин"};
+    private static final String[] NAMES = {
+            "Александр", "Дмитрий", "Максим", "Сергей", "Андрей", "Алексей", "Артём", "Илья",
+            "Кирилл", "Михаил", "Никита", "Матвей", "Роман", "Егор", "Арсений", "Иван"};
+    private static final String[] PATRONYMICS = {
+            "Александрович", "Дмитриевич", "Сергеевич", "Андреевич", "Алексеевич", "Михайлович",
+            "Иванович", "Николаевич", "Петрович", "Владимирович"};
+    private static final String[] SUBJECTS = {
+            "Математика", "Русский язык", "Литература", "Физика", "Химия", "Биология",
+            "История", "География", "Информатика", "Английский язык", "Обществознание", "Физкультура"};
+    private static final String[] LETTERS = {"А", "Б", "В", "Г"};
+
+    /**
+     * Заполняет хранилища синтетическими данными.
+     *
+     * @param students Число учеников.
+     */
+    public static void generate(int students, RecordStore teacherStore, RecordStore studentStore) {
+        Random random = new Random(students);
+        for (int i = 0; i < Math.max(1, students / 20); i++) {
+            String classes = (1 + random.nextInt(11)) + LETTERS[random.nextInt(4)] + ", "
+                    + (1 + random.nextInt(11)) + LETTERS[random.nextInt(4)];
+            teacherStore.add(new String[]{fullName(random), SUBJECTS[random.nextInt(SUBJECTS.length)], classes});
+        }
+        for (int i = 0; i < students; i++) {
+            String className = (1 + random.nextInt(11)) + LETTERS[random.nextInt(4)];
+            studentStore.add(new String[]{fullName(random), className, String.valueOf(2 + random.nextInt(4))});
+        }
+    }
+
+    /**
+     * Записывает синтетический список в XML-файл.
+     */
+    public static void write(int students, File file) throws IOException, XMLStreamException {
+        RecordStore teachers = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        generate(students, teachers, studentStore);
+        new XmlStreamSaver(true).save(file, teachers.snapshot(), studentStore.snapshot());
+    }
+
+    /**
+     * Возвращает файл списка указанного размера, создавая его при первом обращении.
+     * Файлы хранятся в каталоге school-rosters во временном каталоге системы.
+     */
+    public static File roster(int students) throws IOException, XMLStreamException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "school-rosters");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + directory);
+        }
+        File file = new File(directory, "roster-" + students + ".xml");
+        if (!file.isFile()) {
+            File temp = new File(directory, file.getName() + ".tmp");
+            write(students, temp);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Не удалось переименовать " + temp + " в " + file);
+            }
+        }
+        return file;
+    }
+
+    static String fullName(Random random) {
+        return SURNAMES[random.nextInt(SURNAMES.length)] + " " + NAMES[random.nextInt(NAMES.length)] + " "
+                + PATRONYMICS[random.nextInt(PATRONYMICS.length)];
+    }
+
+    /**
+     * Создаёт файл списка: RosterGenerator &lt;число учеников&gt; &lt;файл.xml&gt;.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Использование: RosterGenerator <число учеников> <файл.xml>");
+            System.exit(2);
+        }
+        write(Integer.parseInt(args[0]), new File(args[1]));
+    }
+}
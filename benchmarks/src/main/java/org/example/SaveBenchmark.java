@@ -0,0 +1,52 @@
+package org.example;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Сохранение списка школы: XML с отступами и без, двоичный снимок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SaveBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int students;
+
+    private RecordSnapshot teachers;
+    private RecordSnapshot studentSnapshot;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RecordStore teacherStore = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        RosterGenerator.generate(students, teacherStore, studentStore);
+        teachers = teacherStore.snapshot();
+        studentSnapshot = studentStore.snapshot();
+        output = File.createTempFile("save-" + students, ".out");
+        output.deleteOnExit();
+    }
+
+    @Benchmark
+    public long prettyXml() throws Exception {
+        new XmlStreamSaver(true).save(output, teachers, studentSnapshot);
+        return output.length();
+    }
+
+    @Benchmark
+    public long compactXml() throws Exception {
+        new XmlStreamSaver(false).save(output, teachers, studentSnapshot);
+        return output.length();
+    }
+
+    @Benchmark
+    public long snapshot() throws Exception {
+        BinarySnapshot.write(output, teachers, studentSnapshot);
+        return output.length();
+    }
+}
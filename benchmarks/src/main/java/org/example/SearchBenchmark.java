@@ -0,0 +1,57 @@
+package org.example;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Поиск как в searchTable: по триграммному индексу модели (подстрока, короткий запрос, префикс)
+ * и для сравнения — полным просмотром столбца.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int students;
+
+    private RecordTableModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RecordStore teacherStore = RecordStore.forTeachers();
+        RecordStore studentStore = RecordStore.forStudents();
+        RosterGenerator.generate(students, teacherStore, studentStore);
+        model = new RecordTableModel(studentStore, new String[]{"ФИО", "Класс", "Успеваемость"});
+    }
+
+    @Benchmark
+    public BitSet indexSubstring() {
+        return model.find(0, "петров иван", false);
+    }
+
+    @Benchmark
+    public BitSet indexShortQuery() {
+        return model.find(0, "ов", false);
+    }
+
+    @Benchmark
+    public BitSet indexPrefix() {
+        return model.find(1, "11", true);
+    }
+
+    @Benchmark
+    public BitSet fullScan() {
+        RecordStore store = model.getStore();
+        BitSet rows = new BitSet(store.size());
+        for (int row = 0; row < store.size(); row++) {
+            if (TrigramIndex.matches(store.get(row, 0), "петров иван", false)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+}
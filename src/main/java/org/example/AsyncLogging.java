@@ -0,0 +1,57 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.apache.log4j.Appender;
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Асинхронная запись журнала. Все приёмники корневого логгера подключаются к {@link AsyncAppender}:
+ * вызывающий поток только кладёт событие в ограниченный буфер ({@value #BUFFER_PROPERTY}, событий),
+ * а в файл его записывает фоновый поток. Буфер не блокирует: при переполнении события отбрасываются,
+ * и фоновый поток записывает одну сводку о числе отброшенных, поэтому окно и пакетный режим
+ * не ждут ввода-вывода журнала. Режим отключается свойством {@value #ENABLED_PROPERTY}=false.
+ */
+class AsyncLogging {
+    static final String ENABLED_PROPERTY = "org.example.log.async";
+    static final String BUFFER_PROPERTY = "org.example.log.buffer";
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final String APPENDER_NAME = "async";
+
+    /**
+     * Переводит корневой логгер в асинхронный режим. Вызывается после настройки log4j;
+     * повторный вызов ничего не делает. Оставшиеся в буфере события записываются при завершении программы.
+     */
+    static synchronized void install() {
+        if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+            return;
+        }
+        Logger root = Logger.getRootLogger();
+        if (root.getAppender(APPENDER_NAME) != null) {
+            return;
+        }
+        List<Appender> appenders = new ArrayList<>();
+        for (Enumeration<?> e = root.getAllAppenders(); e.hasMoreElements(); ) {
+            appenders.add((Appender) e.nextElement());
+        }
+        if (appenders.isEmpty()) {
+            return;
+        }
+
+        AsyncAppender async = new AsyncAppender();
+        async.setName(APPENDER_NAME);
+        async.setBufferSize(Integer.getInteger(BUFFER_PROPERTY, DEFAULT_BUFFER_SIZE));
+        async.setBlocking(false);
+        async.setLocationInfo(false);
+        for (Appender appender : appenders) {
+            async.addAppender(appender);
+            root.removeAppender(appender); // removeAllAppenders закрыл бы файлы
+        }
+        root.addAppender(async);
+        Runtime.getRuntime().addShutdownHook(new Thread(LogManager::shutdown, "LogFlushThread"));
+    }
+}
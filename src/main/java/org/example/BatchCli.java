@@ -0,0 +1,355 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import org.apache.log4j.Logger;
+
+/**
+ * Пакетный режим без графического интерфейса: загрузка, сохранение, отчёты и поиск по аргументам
+ * командной строки. Использует те же загрузчики, хранилища и генераторы отчётов, что и окно программы,
+ * но не создаёт окон и не инициализирует Swing, поэтому работает на серверах без дисплея.
+ * <pre>
+ * convert &lt;вход&gt; &lt;выход.xml|выход.snap&gt; [--compact]
+ * report  &lt;вход&gt; &lt;выход&gt; [--format PDF|HTML|CSV|XLSX|ALL] [--by-class] [--zip] [--template файл.jrxml]
+ * search  &lt;вход&gt; --table teachers|students --column номер|имя --query текст [--prefix]
+ * summary &lt;вход&gt; [выход] [--format PDF|HTML|CSV|XLSX] [--template файл.jrxml]
+ * serve   &lt;вход&gt; [--port 8080] [--template файл.jrxml]
+ * </pre>
+ */
+class BatchCli {
+    private static final Logger log = Logger.getLogger(BatchCli.class);
+
+    /** Код завершения при неверных аргументах. */
+    static final int EXIT_USAGE = 2;
+    /** Код завершения при ошибке выполнения. */
+    static final int EXIT_FAILURE = 1;
+
+    private static final String[] TEACHER_COLUMNS = {"name", "subject", "classes"};
+    private static final String[] STUDENT_COLUMNS = {"name", "class", "performance"};
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final RecordStore teachers = RecordStore.forTeachers();
+    private final RecordStore students = RecordStore.forStudents();
+
+    BatchCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Выполняет команду.
+     *
+     * @param args Аргументы командной строки.
+     * @return Код завершения процесса: 0 при успехе.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        // Отчётам нужны только шрифтовые метрики AWT, без окон и дисплея
+        System.setProperty("java.awt.headless", "true");
+        return new BatchCli(out, err).execute(args);
+    }
+
+    private int execute(String[] args) {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h")) {
+            printUsage();
+            return args.length == 0 ? EXIT_USAGE : 0;
+        }
+        try {
+            Map<String, String> options = new HashMap<>();
+            List<String> positional = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--compact") || arg.equals("--by-class") || arg.equals("--zip") || arg.equals("--prefix")) {
+                    options.put(arg, "true");
+                } else if (arg.startsWith("--")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Не задано значение параметра " + arg);
+                    }
+                    options.put(arg, args[++i]);
+                } else {
+                    positional.add(arg);
+                }
+            }
+            switch (args[0]) {
+                case "convert":
+                    requirePositional(positional, 2);
+                    return convert(new File(positional.get(0)), new File(positional.get(1)), options.containsKey("--compact"));
+                case "report":
+                    requirePositional(positional, 2);
+                    return report(new File(positional.get(0)), new File(positional.get(1)),
+                            options.getOrDefault("--format", "PDF").toUpperCase(),
+                            options.containsKey("--by-class"), options.containsKey("--zip"),
+                            options.getOrDefault("--template", "lab_10.jrxml"));
+                case "serve":
+                    requirePositional(positional, 1);
+                    return serve(new File(positional.get(0)), Integer.parseInt(options.getOrDefault("--port", "8080")),
+                            options.getOrDefault("--template", "lab_10.jrxml"));
+                case "summary":
+                    requirePositional(positional, 1);
+                    return summary(new File(positional.get(0)), positional.size() > 1 ? new File(positional.get(1)) : null,
+                            options.getOrDefault("--format", "PDF").toUpperCase(),
+                            options.getOrDefault("--template", ClassSummaryDataSource.TEMPLATE));
+                case "search":
+                    requirePositional(positional, 1);
+                    return search(new File(positional.get(0)), options.get("--table"), options.get("--column"),
+                            options.get("--query"), options.containsKey("--prefix"));
+                default:
+                    throw new IllegalArgumentException("Неизвестная команда: " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            printUsage();
+            return EXIT_USAGE;
+        } catch (IOException | XMLStreamException | JRException | LoadCancelledException e) {
+            err.println("Ошибка: " + e.getMessage());
+            log.error("Ошибка пакетного режима: " + e.getMessage(), e);
+            return EXIT_FAILURE;
+        }
+    }
+
+    private int convert(File input, File output, boolean compact) throws IOException, XMLStreamException, LoadCancelledException {
+        load(input);
+        RecordSnapshot teacherSnapshot = teachers.snapshot();
+        RecordSnapshot studentSnapshot = students.snapshot();
+        if (output.getName().toLowerCase().endsWith("." + BinarySnapshot.EXTENSION)) {
+            BinarySnapshot.write(output, teacherSnapshot, studentSnapshot);
+        } else {
+            new XmlStreamSaver(!compact).save(output, teacherSnapshot, studentSnapshot);
+        }
+        out.println("Сохранено учителей: " + teachers.size() + ", учеников: " + students.size() + " в " + output);
+        return 0;
+    }
+
+    private int report(File input, File output, String format, boolean byClass, boolean zip, String template)
+            throws IOException, XMLStreamException, JRException, LoadCancelledException {
+        if (!format.equals("ALL") && !ReportExporter.FORMATS.contains(format)) {
+            throw new IllegalArgumentException("Неизвестный формат отчёта: " + format);
+        }
+        if (!new File(template).exists()) {
+            throw new IOException("Файл шаблона отчёта не найден: " + template);
+        }
+        load(input);
+        JasperReport jasperReport = new ReportTemplateCache().get(template);
+        RecordSnapshot snapshot = students.snapshot();
+
+        if (byClass) {
+            if (!format.equals("PDF") && !format.equals("HTML")) {
+                throw new IllegalArgumentException("Отчёты по классам формируются только в PDF или HTML");
+            }
+            ReportShardGenerator generator = new ReportShardGenerator(jasperReport, Runtime.getRuntime().availableProcessors());
+            int count;
+            if (zip) {
+                count = generator.exportZip(snapshot, format, output);
+            } else {
+                if (!output.isDirectory() && !output.mkdirs()) {
+                    throw new IOException("Не удалось создать каталог " + output);
+                }
+                count = generator.export(snapshot, format, output).size();
+            }
+            out.println("Сформировано отчётов по классам: " + count + " в " + output);
+            return 0;
+        }
+
+        JRSwapFileVirtualizer virtualizer = ReportVirtualizers.createFor(snapshot.size());
+        try {
+            Map<String, Object> parameters = new HashMap<>();
+            if (virtualizer != null) {
+                parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            }
+            JasperPrint print = ReportExporter.fillReport(jasperReport, parameters, new StudentDataSource(snapshot));
+            if (virtualizer != null) {
+                virtualizer.setReadOnly(true);
+            }
+            if (format.equals("ALL")) {
+                // Пакетные задания обычно запускаются параллельно друг другу, поэтому форматы экспортируются по очереди
+                String base = output.getPath().replaceFirst("\\.[^./\\\\]*$", "");
+                for (String each : ReportExporter.FORMATS) {
+                    File file = new File(base + "." + each.toLowerCase());
+                    ReportExporter.toFile(print, each, file);
+                    out.println(file);
+                }
+            } else {
+                ReportExporter.toFile(print, format, output);
+                out.println(output);
+            }
+        } finally {
+            if (virtualizer != null) {
+                virtualizer.cleanup();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Выводит сводку по классам в виде таблицы с разделителями-табуляциями
+     * или, если задан выходной файл, сохраняет сводный отчёт.
+     */
+    private int summary(File input, File output, String format, String template)
+            throws IOException, XMLStreamException, JRException, LoadCancelledException {
+        if (output != null && !ReportExporter.FORMATS.contains(format)) {
+            throw new IllegalArgumentException("Неизвестный формат отчёта: " + format);
+        }
+        if (output != null && !new File(template).exists()) {
+            throw new IOException("Файл шаблона отчёта не найден: " + template);
+        }
+        load(input);
+        ClassStatistics statistics = ClassStatistics.of(students.snapshot());
+        List<ClassSummary> summaries = statistics.summaries();
+        ClassSummary total = statistics.total();
+        if (output == null) {
+            out.println("class\tstudents\tgraded\taverage\tmin\tmax\tdistribution");
+            for (ClassSummary summary : summaries) {
+                printSummary(summary.getClassName(), summary);
+            }
+            printSummary("*", total);
+            return 0;
+        }
+        JasperReport jasperReport = new ReportTemplateCache().get(template);
+        JasperPrint print = ReportExporter.fillReport(jasperReport, ClassSummaryDataSource.parameters(total), new ClassSummaryDataSource(summaries));
+        ReportExporter.toFile(print, format, output);
+        out.println("Сводный отчёт по " + summaries.size() + " классам сохранён в " + output);
+        return 0;
+    }
+
+    private void printSummary(String title, ClassSummary summary) {
+        Double average = summary.getAverage();
+        out.println(title + "\t" + summary.getCount() + "\t" + summary.getGraded()
+                + "\t" + (average != null ? String.format(java.util.Locale.ROOT, "%.2f", average) : "")
+                + "\t" + (summary.getMin() != null ? summary.getMin() : "")
+                + "\t" + (summary.getMax() != null ? summary.getMax() : "")
+                + "\t" + summary.getDistribution());
+    }
+
+    private int search(File input, String table, String column, String query, boolean prefix)
+            throws IOException, XMLStreamException, LoadCancelledException {
+        if (table == null || column == null || query == null) {
+            throw new IllegalArgumentException("Для поиска нужны параметры --table, --column и --query");
+        }
+        String[] columns;
+        RecordStore store;
+        if (table.equals("teachers")) {
+            columns = TEACHER_COLUMNS;
+            store = teachers;
+        } else if (table.equals("students")) {
+            columns = STUDENT_COLUMNS;
+            store = students;
+        } else {
+            throw new IllegalArgumentException("Неизвестная таблица: " + table);
+        }
+        int columnIndex = Arrays.asList(columns).indexOf(column);
+        if (columnIndex < 0) {
+            try {
+                columnIndex = Integer.parseInt(column);
+            } catch (NumberFormatException e) {
+                columnIndex = -1;
+            }
+        }
+        if (columnIndex < 0 || columnIndex >= columns.length) {
+            throw new IllegalArgumentException("Неизвестный столбец: " + column);
+        }
+
+        load(input);
+        TrigramIndex index = new TrigramIndex(store.getColumnCount());
+        index.rowsAppended(store, 0, store.size());
+        BitSet rows = index.find(store, columnIndex, query, prefix);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            out.println(String.join("\t", store.getRow(row)));
+        }
+        err.println("Найдено записей: " + rows.cardinality());
+        return 0;
+    }
+
+    /**
+     * Загружает данные и обслуживает HTTP-запросы до завершения процесса.
+     * Изменения выполняются в отдельном потоке-владельце данных.
+     */
+    private int serve(File input, int port, String template) throws IOException, XMLStreamException, LoadCancelledException {
+        load(input);
+        ExecutorService owner = Executors.newSingleThreadExecutor(r -> new Thread(r, "DataOwnerThread"));
+        SchoolHttpServer server = new SchoolHttpServer(
+                new RecordTableModel(teachers, new String[]{"ФИО", "Предмет", "Классы"}),
+                new RecordTableModel(students, new String[]{"ФИО", "Класс", "Успеваемость"}),
+                owner, null, new ReportTemplateCache(), new ReportResultCache(), template);
+        server.start(port);
+        HotPathMetrics.registerMBeans();
+        out.println("HTTP-сервис слушает порт " + server.getPort() + "; изменения не сохраняются в файл, для выхода Ctrl+C");
+        java.util.concurrent.CountDownLatch stopped = new java.util.concurrent.CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            owner.shutdown();
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    /**
+     * Загружает XML-файл или снимок в хранилища тем же способом, что и окно программы.
+     */
+    private void load(File input) throws IOException, XMLStreamException, LoadCancelledException {
+        if (!input.isFile()) {
+            throw new IOException("Файл не найден: " + input);
+        }
+        XmlStreamLoader.RecordSink sink = new XmlStreamLoader.RecordSink() {
+            @Override
+            public void teacher(String[] teacher) {
+                teachers.add(teacher);
+            }
+
+            @Override
+            public void student(String[] student) {
+                students.add(student);
+            }
+        };
+        if (BinarySnapshot.isSnapshot(input)) {
+            BinarySnapshot.read(input, sink, null, null);
+        } else if (input.length() >= ParallelXmlLoader.PARALLEL_THRESHOLD) {
+            try {
+                new ParallelXmlLoader().load(input, sink, null);
+            } catch (UnsupportedLayoutException e) {
+                teachers.clear();
+                students.clear();
+                new XmlStreamLoader().load(input, sink, null);
+            }
+        } else {
+            new XmlStreamLoader().load(input, sink, null);
+        }
+        log.info("Пакетный режим: загружено учителей " + teachers.size() + ", учеников " + students.size() + " из " + input);
+    }
+
+    private static void requirePositional(List<String> positional, int count) {
+        if (positional.size() < count) {
+            throw new IllegalArgumentException("Недостаточно аргументов");
+        }
+    }
+
+    private void printUsage() {
+        err.println("Использование:");
+        err.println("  convert <вход> <выход.xml|выход." + BinarySnapshot.EXTENSION + "> [--compact]");
+        err.println("  report  <вход> <выход> [--format PDF|HTML|CSV|XLSX|ALL] [--by-class] [--zip] [--template файл.jrxml]");
+        err.println("  search  <вход> --table teachers|students --column номер|имя --query текст [--prefix]");
+        err.println("  summary <вход> [выход] [--format PDF|HTML|CSV|XLSX] [--template файл.jrxml]");
+        err.println("  serve   <вход> [--port 8080] [--template файл.jrxml]");
+    }
+}
@@ -0,0 +1,256 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Двоичный снимок данных школы для быстрой загрузки.
+ * XML остаётся форматом обмена, снимок служит для быстрого старта.
+ * <p>
+ * Формат (порядок байт big-endian):
+ * <pre>
+ * заголовок (40 байт):
+ *   int   MAGIC            сигнатура "SCHB"
+ *   int   VERSION          версия формата
+ *   int   teacherCount     число учителей
+ *   int   studentCount     число учеников
+ *   int   stringCount      число строк в таблице строк
+ *   long  stringTableSize  размер таблицы строк в байтах
+ *   long  stringTableCrc   CRC32 таблицы строк
+ *   int   columnsCrc       CRC32 столбцов
+ * таблица строк: для каждой строки int длина в байтах UTF-8 и сами байты
+ * столбцы: int-номера строк из таблицы, по столбцу подряд —
+ *   ФИО, предмет, классы учителей; ФИО, класс, успеваемость учеников
+ * </pre>
+ * Каждая различная строка хранится один раз, поэтому столбцы класса и предмета
+ * фактически закодированы словарём.
+ */
+class BinarySnapshot {
+    private static final Logger log = Logger.getLogger(BinarySnapshot.class);
+
+    /** Расширение файлов снимка. */
+    static final String EXTENSION = "snap";
+
+    static final int MAGIC = 0x53434842; // "SCHB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Проверяет по сигнатуре, является ли файл снимком.
+     */
+    public static boolean isSnapshot(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Записывает учителей и учеников в файл снимка, заменяя его содержимое.
+     *
+     * @param file     Файл снимка.
+     * @param teachers Хранилище учителей.
+     * @param students Хранилище учеников.
+     * @throws IOException при ошибке записи.
+     */
+    public static void write(File file, RecordSource teachers, RecordSource students) throws IOException {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.SAVE.start()) {
+            writeFile(file, teachers, students);
+            sample.succeeded((long) teachers.size() + students.size());
+        }
+    }
+
+    private static void writeFile(File file, RecordSource teachers, RecordSource students) throws IOException {
+        // Таблица строк: каждая различная строка получает номер
+        StringDictionary strings = new StringDictionary();
+        int[][] teacherColumns = encodeColumns(teachers, strings);
+        int[][] studentColumns = encodeColumns(students, strings);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+
+            // Таблица строк
+            CRC32 stringCrc = new CRC32();
+            long stringTableSize = 0;
+            for (int i = 0; i < strings.size(); i++) {
+                byte[] bytes = strings.decode(i).getBytes(StandardCharsets.UTF_8);
+                byte[] length = ByteBuffer.allocate(4).putInt(bytes.length).array();
+                out.write(length);
+                out.write(bytes);
+                stringCrc.update(length);
+                stringCrc.update(bytes);
+                stringTableSize += 4 + bytes.length;
+            }
+
+            // Столбцы
+            CRC32 columnsCrc = new CRC32();
+            ByteBuffer scratch = ByteBuffer.allocate(BUFFER_SIZE);
+            for (int[][] columns : new int[][][]{teacherColumns, studentColumns}) {
+                for (int[] column : columns) {
+                    for (int id : column) {
+                        if (scratch.remaining() < 4) {
+                            flush(scratch, out, columnsCrc);
+                        }
+                        scratch.putInt(id);
+                    }
+                }
+            }
+            flush(scratch, out, columnsCrc);
+            out.flush();
+
+            // Заголовок записывается в начало файла после подсчёта контрольных сумм
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(teachers.size()).putInt(students.size()).putInt(strings.size())
+                    .putLong(stringTableSize).putLong(stringCrc.getValue()).putInt((int) columnsCrc.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(false);
+        }
+        log.debug("Снимок записан: учителей " + teachers.size() + ", учеников " + students.size()
+                + ", строк " + strings.size());
+    }
+
+    /**
+     * Читает снимок через отображение файла в память и передаёт записи приёмнику.
+     *
+     * @param file     Файл снимка.
+     * @param sink     Приёмник записей учителей и учеников.
+     * @param listener  Слушатель прогресса (может быть null).
+     * @param cancelled Проверка запроса отмены (может быть null).
+     * @throws IOException            при ошибке чтения, неподдерживаемой версии или несовпадении контрольных сумм.
+     * @throws LoadCancelledException если загрузка была отменена.
+     */
+    public static void read(File file, XmlStreamLoader.RecordSink sink, XmlStreamLoader.ProgressListener listener,
+                            java.util.function.BooleanSupplier cancelled) throws IOException, LoadCancelledException {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.LOAD.start();
+             FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Снимок больше 2 ГБ не поддерживается: " + file.getName());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+
+            if (fileSize < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Файл не является снимком данных: " + file.getName());
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+            int teacherCount = buffer.getInt();
+            int studentCount = buffer.getInt();
+            int stringCount = buffer.getInt();
+            long stringTableSize = buffer.getLong();
+            long stringCrc = buffer.getLong();
+            int columnsCrc = buffer.getInt();
+            long columnsSize = 4L * 3 * ((long) teacherCount + studentCount);
+            if (teacherCount < 0 || studentCount < 0 || stringCount < 0
+                    || HEADER_SIZE + stringTableSize + columnsSize != fileSize) {
+                throw new IOException("Повреждённый заголовок снимка: " + file.getName());
+            }
+
+            // Контрольные суммы проверяются до материализации данных
+            if (crc(buffer, HEADER_SIZE, (int) stringTableSize) != stringCrc
+                    || (int) crc(buffer, (int) (HEADER_SIZE + stringTableSize), (int) columnsSize) != columnsCrc) {
+                throw new IOException("Контрольная сумма снимка не совпадает: " + file.getName());
+            }
+
+            // Таблица строк
+            String[] strings = new String[stringCount];
+            byte[] scratch = new byte[256];
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < stringCount; i++) {
+                int length = buffer.getInt();
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                buffer.get(scratch, 0, length);
+                strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int columnsStart = (int) (HEADER_SIZE + stringTableSize);
+            emitRows(buffer, columnsStart, teacherCount, strings, sink, true, cancelled);
+            emitRows(buffer, columnsStart + 12 * teacherCount, studentCount, strings, sink, false, cancelled);
+            if (listener != null) {
+                listener.onProgress(fileSize, fileSize, teacherCount, studentCount);
+            }
+            sample.succeeded((long) teacherCount + studentCount);
+            log.debug("Снимок прочитан: учителей " + teacherCount + ", учеников " + studentCount);
+        } catch (IndexOutOfBoundsException | java.nio.BufferUnderflowException e) {
+            throw new IOException("Повреждённый снимок: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Собирает записи из трёх столбцов, записанных подряд начиная с offset.
+     */
+    private static void emitRows(ByteBuffer buffer, int offset, int count, String[] strings,
+                                 XmlStreamLoader.RecordSink sink, boolean teachers,
+                                 java.util.function.BooleanSupplier cancelled) throws LoadCancelledException {
+        int column1 = offset + 4 * count;
+        int column2 = column1 + 4 * count;
+        for (int row = 0; row < count; row++) {
+            if (cancelled != null && row % XmlStreamLoader.PROGRESS_STEP == 0 && cancelled.getAsBoolean()) {
+                throw new LoadCancelledException("Загрузка снимка прервана после " + row + " записей "
+                        + (teachers ? "учителей." : "учеников."));
+            }
+            String[] values = {
+                    strings[buffer.getInt(offset + 4 * row)],
+                    strings[buffer.getInt(column1 + 4 * row)],
+                    strings[buffer.getInt(column2 + 4 * row)]};
+            if (teachers) {
+                sink.teacher(values);
+            } else {
+                sink.student(values);
+            }
+        }
+    }
+
+    private static int[][] encodeColumns(RecordSource store, StringDictionary strings) {
+        int[][] columns = new int[store.getColumnCount()][store.size()];
+        for (int c = 0; c < columns.length; c++) {
+            for (int row = 0; row < store.size(); row++) {
+                columns[c][row] = strings.encode(store.get(row, c));
+            }
+        }
+        return columns;
+    }
+
+    private static void flush(ByteBuffer scratch, OutputStream out, CRC32 crc) throws IOException {
+        scratch.flip();
+        crc.update(scratch.array(), 0, scratch.limit());
+        out.write(scratch.array(), 0, scratch.limit());
+        scratch.clear();
+    }
+
+    private static long crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset).limit(offset + length);
+        crc.update(slice);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,86 @@
+package org.example;
+
+import java.util.BitSet;
+
+import javax.swing.RowFilter;
+
+/**
+ * Фильтр строк таблицы по заранее вычисленному множеству строк модели.
+ * Множество относится к версии данных модели, для которой оно найдено. После добавления,
+ * удаления, правки или загрузки номера строк сдвигаются, поэтому при первом обращении
+ * к изменённой модели запрос выполняется по индексу заново. Вызывается в EDT.
+ */
+class BitSetRowFilter extends RowFilter<RecordTableModel, Integer> {
+    private final RecordTableModel model;
+    private final int column;
+    private final String query;
+    private final boolean prefix;
+    private BitSet rows;
+    private long modCount;
+    private boolean removing; // Строки уже сдвинуты под выполняющееся удаление
+
+    /**
+     * @param model    Модель таблицы.
+     * @param column   Индекс столбца поиска.
+     * @param query    Запрос.
+     * @param prefix   true для поиска по префиксу.
+     * @param rows     Строки, найденные по запросу.
+     * @param modCount Версия данных модели, для которой найдены строки.
+     */
+    public BitSetRowFilter(RecordTableModel model, int column, String query, boolean prefix, BitSet rows, long modCount) {
+        this.model = model;
+        this.column = column;
+        this.query = query;
+        this.prefix = prefix;
+        this.rows = rows;
+        this.modCount = modCount;
+    }
+
+    @Override
+    public boolean include(Entry<? extends RecordTableModel, ? extends Integer> entry) {
+        long current = model.getModCount();
+        if (current != modCount && !removing) {
+            rows = model.find(column, query, prefix);
+            modCount = current;
+        }
+        return rows.get(entry.getIdentifier());
+    }
+
+    /**
+     * Сдвигает найденные строки перед удалением строк из модели: оставшиеся строки смещаются
+     * на число удалённых перед ними, поэтому повторный поиск не нужен. После удаления
+     * нужно вызвать {@link #removalApplied()}; до этого событие модели об удалении
+     * обрабатывается по сдвинутому множеству.
+     *
+     * @param sortedRows Удаляемые строки модели по возрастанию, без повторов.
+     */
+    public void rowsRemoving(int[] sortedRows) {
+        if (model.getModCount() != modCount) {
+            return; // Множество устарело — будет найдено заново
+        }
+        BitSet shifted = new BitSet(rows.length());
+        int removed = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            while (removed < sortedRows.length && sortedRows[removed] < row) {
+                removed++;
+            }
+            if (removed < sortedRows.length && sortedRows[removed] == row) {
+                continue; // Строка удаляется
+            }
+            shifted.set(row - removed);
+        }
+        rows = shifted;
+        removing = true;
+    }
+
+    /**
+     * Завершает удаление, начатое {@link #rowsRemoving(int[])}: сдвинутое множество
+     * относится к текущей версии данных модели.
+     */
+    public void removalApplied() {
+        if (removing) {
+            removing = false;
+            modCount = model.getModCount();
+        }
+    }
+}
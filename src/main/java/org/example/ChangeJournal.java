@@ -0,0 +1,578 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Журнал изменений, дописываемый к файлу данных.
+ * Каждое добавление, удаление или правка записывается отдельной короткой записью с контрольной суммой
+ * и сбрасывается на диск потоком записи журнала вместе с соседними записями, поэтому правка стоит
+ * одной дозаписи, а не перезаписи всего файла.
+ * После сбоя журнал воспроизводится поверх последнего сохранённого файла.
+ * Когда журнал разрастается, файл данных переписывается целиком, а журнал укорачивается ({@link #checkpoint}).
+ * <p>
+ * Формат: заголовок {@value #HEADER_SIZE} байт (сигнатура, версия, размер и время изменения файла данных,
+ * логическое смещение первой записи), затем записи [длина][CRC32][тип, таблица, данные].
+ * Строки записываются как длина и байты UTF-8, поэтому их размер не ограничен 64 КБ.
+ * Журнал относится к файлу данных, только если размер и время изменения в заголовке совпадают.
+ * <p>
+ * При контрольной точке новый журнал сначала записывается рядом с основным ({@link #PENDING_SUFFIX})
+ * и привязывается к уже записанному, но ещё не перенесённому на место файлу данных. Если сбой
+ * произошёл после замены файла данных, но до замены журнала, {@link #open} подхватывает ожидающий журнал.
+ */
+class ChangeJournal implements Closeable {
+    private static final Logger log = Logger.getLogger(ChangeJournal.class);
+
+    /** Суффикс файла журнала рядом с файлом данных. */
+    static final String SUFFIX = ".journal";
+    /** Суффикс журнала, записанного при контрольной точке и ещё не перенесённого на место. */
+    static final String PENDING_SUFFIX = ".tmp";
+
+    static final int MAGIC = 0x53434a4c; // "SCJL"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+
+    /** Размер журнала, после которого файл данных стоит переписать целиком. */
+    static final long COMPACT_THRESHOLD = 4L << 20;
+
+    static final byte ADD = 1;
+    static final byte DELETE = 2;
+    static final byte SET = 3;
+
+    static final int TEACHERS = 0;
+    static final int STUDENTS = 1;
+
+    /**
+     * Запись журнала.
+     */
+    static final class Entry {
+        final byte type;
+        final int table;
+        final String[] values; // ADD
+        final int[] rows;      // DELETE
+        final int row;         // SET
+        final int column;      // SET
+        final String value;    // SET
+
+        private Entry(byte type, int table, String[] values, int[] rows, int row, int column, String value) {
+            this.type = type;
+            this.table = table;
+            this.values = values;
+            this.rows = rows;
+            this.row = row;
+            this.column = column;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Запись файла данных целиком при контрольной точке.
+     */
+    interface BaseWriter {
+        /**
+         * Записывает содержимое файла данных в указанный временный файл и сбрасывает его на диск.
+         * На место файла данных его переносит журнал.
+         */
+        void write(File file) throws IOException;
+    }
+
+    private final Object checkpointLock = new Object();
+    private File baseFile;
+    private File journalFile;
+    private FileChannel channel;
+    private volatile long startOffset; // Логическое смещение первой записи в файле журнала
+    private List<Entry> recovered;
+
+    // Очередь записей для потока записи журнала; поля ниже защищены queueLock
+    private final Object queueLock = new Object();
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private long end;                // Логический конец журнала вместе с записями в очереди
+    private long durable;            // Логический конец записей, уже сброшенных на диск
+    private IOException failure;
+    private boolean closing;
+    private Thread writerThread;
+
+    private ChangeJournal(File baseFile) {
+        this.baseFile = baseFile;
+        this.journalFile = journalFor(baseFile);
+    }
+
+    /**
+     * Файл журнала для файла данных.
+     */
+    static File journalFor(File baseFile) {
+        return new File(baseFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * Ожидающий журнал, записанный при незавершённой контрольной точке.
+     */
+    static File pendingFor(File journalFile) {
+        return new File(journalFile.getPath() + PENDING_SUFFIX);
+    }
+
+    /**
+     * Открывает журнал файла данных для дозаписи. Записи, оставшиеся от прошлого сеанса,
+     * доступны через {@link #takeRecovered()}; недописанный при сбое хвост отбрасывается.
+     * Журнал, относящийся к другой версии файла данных, заменяется пустым.
+     *
+     * @param baseFile Загруженный файл данных (XML или снимок).
+     * @throws IOException при ошибке чтения или создания журнала.
+     */
+    public static ChangeJournal open(File baseFile) throws IOException {
+        ChangeJournal journal = new ChangeJournal(baseFile);
+        journal.recovered = new ArrayList<>();
+        long validEnd = -1;
+        if (journal.journalFile.exists()) {
+            validEnd = journal.readExisting(journal.journalFile);
+        }
+        File pending = pendingFor(journal.journalFile);
+        if (validEnd < 0 && pending.exists()) {
+            // Контрольная точка прервалась после замены файла данных: её журнал относится к нему
+            validEnd = journal.readExisting(pending);
+            if (validEnd >= 0) {
+                java.nio.file.Files.move(pending.toPath(), journal.journalFile.toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                log.info("Журнал " + journal.journalFile + " восстановлен после прерванной контрольной точки");
+            }
+        }
+        pending.delete();
+        if (validEnd < 0 && journal.journalFile.exists()) {
+            log.warn("Журнал " + journal.journalFile + " не относится к текущей версии файла данных и будет заменён");
+        }
+        if (validEnd < 0) {
+            journal.channel = createJournal(journal.journalFile, baseFile, 0);
+        } else {
+            journal.channel = FileChannel.open(journal.journalFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            journal.channel.truncate(validEnd);
+            journal.channel.position(validEnd);
+        }
+        journal.startWriter();
+        return journal;
+    }
+
+    /**
+     * Создаёт пустой журнал для только что записанного файла данных, заменяя прежний.
+     */
+    public static ChangeJournal create(File baseFile) throws IOException {
+        ChangeJournal journal = new ChangeJournal(baseFile);
+        journal.channel = createJournal(journal.journalFile, baseFile, 0);
+        journal.startWriter();
+        return journal;
+    }
+
+    /**
+     * Возвращает записи, восстановленные при открытии, и забывает их.
+     */
+    public List<Entry> takeRecovered() {
+        List<Entry> entries = recovered;
+        recovered = null;
+        return entries != null ? entries : new ArrayList<>();
+    }
+
+    public File getBaseFile() {
+        return baseFile;
+    }
+
+    /**
+     * Записывает добавление записи.
+     */
+    public void add(int table, String[] values) throws IOException {
+        append(ADD, table, out -> {
+            out.writeByte(values.length);
+            for (String value : values) {
+                writeString(out, value);
+            }
+        });
+    }
+
+    /**
+     * Записывает удаление строк.
+     *
+     * @param sortedRows Отсортированные индексы строк модели без повторов.
+     */
+    public void delete(int table, int[] sortedRows) throws IOException {
+        append(DELETE, table, out -> {
+            out.writeInt(sortedRows.length);
+            for (int row : sortedRows) {
+                out.writeInt(row);
+            }
+        });
+    }
+
+    /**
+     * Записывает изменение ячейки.
+     */
+    public void set(int table, int row, int column, String value) throws IOException {
+        append(SET, table, out -> {
+            out.writeInt(row);
+            out.writeByte(column);
+            writeString(out, value);
+        });
+    }
+
+    /**
+     * Логическая позиция конца журнала, включая записи, ещё не сброшенные на диск.
+     * Вместе со снимком хранилищ задаёт точку, до которой изменения попадут в файл данных
+     * при контрольной точке.
+     */
+    public long position() throws IOException {
+        synchronized (queueLock) {
+            return end;
+        }
+    }
+
+    /**
+     * Размер журнала в байтах вместе с записями в очереди.
+     */
+    public long size() throws IOException {
+        return HEADER_SIZE + position() - startOffset;
+    }
+
+    /**
+     * Ждёт, пока все записи, добавленные до вызова, будут сброшены на диск.
+     *
+     * @throws IOException если поток записи журнала завершился с ошибкой.
+     */
+    public void sync() throws IOException {
+        awaitDurable(position());
+    }
+
+    /**
+     * Контрольная точка: записывает файл данных и оставляет в журнале только изменения после upTo.
+     * Если целевой файл — другой, журнал переносится к нему.
+     * Дозапись в журнал во время записи файла данных не блокируется.
+     * Файл данных пишется во временный файл рядом с newBase; на место он переносится только
+     * после того, как записан привязанный к нему журнал.
+     *
+     * @param newBase Файл данных, который будет записан.
+     * @param upTo    Позиция журнала, соответствующая записываемым данным.
+     * @param writer  Запись файла данных.
+     * @return false, если данные старее уже записанной контрольной точки и запись пропущена.
+     * @throws IOException при ошибке записи.
+     */
+    public boolean checkpoint(File newBase, long upTo, BaseWriter writer) throws IOException {
+        synchronized (checkpointLock) {
+            boolean sameBase;
+            long start;
+            synchronized (this) {
+                sameBase = newBase.getAbsoluteFile().equals(baseFile.getAbsoluteFile());
+                start = startOffset;
+            }
+            if (upTo < start && sameBase) {
+                // Журнал уже укорочен дальше этой точки: данные upTo старее сохранённых
+                return false;
+            }
+            File content = new File(newBase.getPath() + ".tmp");
+            try {
+                writer.write(content);
+                // Записи до upTo могут ещё стоять в очереди: хвост копируется только после их записи
+                awaitDurable(upTo);
+                if (upTo < start) {
+                    moveAtomically(content, newBase);
+                    log.warn("Журнал не перенесён к " + newBase + ": данные сохранены, изменения продолжают записываться к " + baseFile);
+                    return true;
+                }
+                synchronized (this) {
+                    rewriteTail(newBase, content, upTo);
+                }
+                return true;
+            } finally {
+                content.delete();
+            }
+        }
+    }
+
+    /**
+     * Дописывает записи из очереди, сбрасывает их на диск и закрывает журнал.
+     * Блокирует вызывающий поток до завершения записи.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (queueLock) {
+            closing = true;
+            queueLock.notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Прервано ожидание записи журнала");
+        }
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+        synchronized (queueLock) {
+            if (durable < end) {
+                throw new IOException("Последние изменения не записаны в журнал", failure);
+            }
+        }
+    }
+
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Ставит запись в очередь потока записи журнала. На диск она попадает вместе с соседними
+     * записями одним сбросом; вызывающий поток, обычно EDT, диска не ждёт.
+     */
+    private void append(byte type, int table, Payload payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // Длина и контрольная сумма заполняются ниже
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeByte(table);
+        payload.write(out);
+        out.flush();
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.remaining() - 8;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, length);
+        record.putInt(0, length).putInt(4, (int) crc.getValue());
+        synchronized (queueLock) {
+            if (failure != null) {
+                throw new IOException("Журнал изменений недоступен: " + failure.getMessage(), failure);
+            }
+            if (closing) {
+                throw new IOException("Журнал изменений закрыт");
+            }
+            queue.add(record);
+            end += record.remaining();
+            queueLock.notifyAll();
+        }
+    }
+
+    private void startWriter() throws IOException {
+        end = startOffset + channel.size() - HEADER_SIZE;
+        durable = end;
+        writerThread = new Thread(this::writeQueued, "JournalWriterThread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Цикл потока записи журнала: забирает всё, что накопилось в очереди,
+     * и сбрасывает пачку на диск одним force.
+     */
+    private void writeQueued() {
+        while (true) {
+            ByteBuffer[] batch;
+            long batchEnd;
+            synchronized (queueLock) {
+                while (queue.isEmpty() && !closing) {
+                    try {
+                        queueLock.wait();
+                    } catch (InterruptedException e) {
+                        // Поток останавливается только через close()
+                    }
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                batch = queue.toArray(new ByteBuffer[0]);
+                queue.clear();
+                batchEnd = end;
+            }
+            try {
+                synchronized (this) {
+                    while (batch[batch.length - 1].hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("В журнал сброшено записей: " + batch.length);
+                }
+                synchronized (queueLock) {
+                    durable = batchEnd;
+                    queueLock.notifyAll();
+                }
+            } catch (IOException e) {
+                log.error("Ошибка записи журнала изменений: " + e.getMessage(), e);
+                synchronized (queueLock) {
+                    failure = e;
+                    queue.clear();
+                    queueLock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ждёт, пока записи до логической позиции upTo будут сброшены на диск.
+     */
+    private void awaitDurable(long upTo) throws IOException {
+        synchronized (queueLock) {
+            while (durable < upTo && failure == null) {
+                try {
+                    queueLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Прервано ожидание записи журнала");
+                }
+            }
+            if (durable < upTo) {
+                throw new IOException("Журнал изменений недоступен: " + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    /**
+     * Читает существующий журнал в {@link #recovered}.
+     *
+     * @param file Файл журнала.
+     * @return Конец последней целой записи или -1, если журнал не относится к файлу данных.
+     */
+    private long readExisting(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long fileSize = file.length();
+            if (fileSize < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != baseFile.length() || in.readLong() != baseFile.lastModified()) {
+                return -1;
+            }
+            startOffset = in.readLong();
+            long position = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (fileSize - position >= 8) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 2 || length > fileSize - position - 8) {
+                    break; // Запись оборвана при сбое
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                recovered.add(parse(payload));
+                position += 8 + length;
+            }
+            if (position < fileSize) {
+                log.warn("Отброшен повреждённый хвост журнала: " + (fileSize - position) + " байт");
+            }
+            return position;
+        }
+    }
+
+    private static Entry parse(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        int table = in.readByte();
+        switch (type) {
+            case ADD:
+                String[] values = new String[in.readUnsignedByte()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readString(in);
+                }
+                return new Entry(type, table, values, null, 0, 0, null);
+            case DELETE:
+                int[] rows = new int[in.readInt()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = in.readInt();
+                }
+                return new Entry(type, table, null, rows, 0, 0, null);
+            case SET:
+                int row = in.readInt();
+                int column = in.readUnsignedByte();
+                return new Entry(type, table, null, null, row, column, readString(in));
+            default:
+                throw new IOException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Некорректная длина строки в записи журнала: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Заменяет файл данных записанным content, а журнал — новым, привязанным к нему и содержащим записи после upTo.
+     * Новый журнал записывается до замены файла данных: переименование сохраняет размер и время изменения,
+     * поэтому после сбоя между двумя заменами ожидающий журнал совпадает с новым файлом данных.
+     */
+    private void rewriteTail(File newBase, File content, long upTo) throws IOException {
+        if (channel == null) {
+            throw new IOException("Журнал изменений закрыт");
+        }
+        File newJournal = journalFor(newBase);
+        File pending = pendingFor(newJournal);
+        long from = HEADER_SIZE + (upTo - startOffset);
+        try (FileChannel out = createJournal(pending, content, upTo)) {
+            long count = channel.size() - from;
+            long copied = 0;
+            while (copied < count) {
+                copied += channel.transferTo(from + copied, count - copied, out);
+            }
+            out.force(true);
+        }
+        try {
+            moveAtomically(content, newBase);
+        } catch (IOException e) {
+            // Прежний файл данных и журнал остаются действительными
+            pending.delete();
+            throw e;
+        }
+        channel.close();
+        moveAtomically(pending, newJournal);
+        baseFile = newBase;
+        journalFile = newJournal;
+        startOffset = upTo;
+        channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    private static void moveAtomically(File from, File to) throws IOException {
+        java.nio.file.Files.move(from.toPath(), to.toPath(),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static FileChannel createJournal(File file, File baseFile, long startOffset) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(baseFile.length()).putLong(baseFile.lastModified()).putLong(startOffset);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        return channel;
+    }
+}
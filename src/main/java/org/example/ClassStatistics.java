@@ -0,0 +1,195 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сводка успеваемости по классам, обновляемая при каждом изменении списка учеников.
+ * Для каждого класса хранятся число учеников, сумма и гистограмма оценок, поэтому добавление,
+ * удаление и правка ученика обходятся O(1), а сводку можно получить в любой момент без просмотра
+ * всего списка. Минимум и максимум берутся из гистограммы и остаются верными после удалений.
+ * Оценкой считается целое число от 0 до {@value #MAX_GRADE}; остальные значения успеваемости
+ * учитываются только в числе учеников. Изменения приходят из потока модели, сводки можно
+ * запрашивать из любого потока.
+ */
+class ClassStatistics implements RecordObserver {
+    static final int MAX_GRADE = 10;
+
+    private final int classColumn;
+    private final int performanceColumn;
+    private final Map<String, Aggregate> classes = new HashMap<>();
+    private final Aggregate school = new Aggregate();
+
+    /**
+     * Накопленные значения одного класса.
+     */
+    static final class Aggregate {
+        int count;
+        int graded;
+        long sum;
+        final int[] histogram = new int[MAX_GRADE + 1];
+
+        void add(int grade, int delta) {
+            count += delta;
+            if (grade >= 0) {
+                graded += delta;
+                sum += (long) grade * delta;
+                histogram[grade] += delta;
+            }
+        }
+    }
+
+    /**
+     * @param classColumn       Индекс столбца класса.
+     * @param performanceColumn Индекс столбца успеваемости.
+     */
+    ClassStatistics(int classColumn, int performanceColumn) {
+        this.classColumn = classColumn;
+        this.performanceColumn = performanceColumn;
+    }
+
+    /**
+     * Название класса, по которому группируются ученики: без начальных и конечных пробелов.
+     * Используется и сводкой, и отчётами по классам, чтобы их группы совпадали.
+     */
+    static String classKey(String className) {
+        return className.trim();
+    }
+
+    /**
+     * Собирает сводку по всем записям хранилища (для пакетного режима без модели таблицы).
+     */
+    static ClassStatistics of(RecordSource students) {
+        ClassStatistics statistics = new ClassStatistics(1, 2);
+        statistics.rowsAppended(students, 0, students.size());
+        return statistics;
+    }
+
+    @Override
+    public synchronized void rowsAppended(RecordSource store, int from, int to) {
+        for (int row = from; row < to; row++) {
+            update(store.get(row, classColumn), store.get(row, performanceColumn), 1);
+        }
+    }
+
+    @Override
+    public synchronized void rowsRemoving(RecordSource store, int[] sortedRows) {
+        for (int row : sortedRows) {
+            update(store.get(row, classColumn), store.get(row, performanceColumn), -1);
+        }
+    }
+
+    @Override
+    public synchronized void valueChanged(RecordSource store, int row, int column, String oldValue) {
+        if (column == classColumn) {
+            String performance = store.get(row, performanceColumn);
+            update(oldValue, performance, -1);
+            update(store.get(row, classColumn), performance, 1);
+        } else if (column == performanceColumn) {
+            String className = store.get(row, classColumn);
+            update(className, oldValue, -1);
+            update(className, store.get(row, performanceColumn), 1);
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        classes.clear();
+        school.count = 0;
+        school.graded = 0;
+        school.sum = 0;
+        Arrays.fill(school.histogram, 0);
+    }
+
+    private void update(String className, String performance, int delta) {
+        String key = classKey(className);
+        int grade = grade(performance);
+        Aggregate aggregate = classes.computeIfAbsent(key, k -> new Aggregate());
+        aggregate.add(grade, delta);
+        if (aggregate.count == 0) {
+            classes.remove(key);
+        }
+        school.add(grade, delta);
+    }
+
+    /**
+     * Разбирает оценку без исключений: -1, если значение не целое число от 0 до {@value #MAX_GRADE}.
+     */
+    static int grade(String performance) {
+        int start = 0;
+        int end = performance.length();
+        while (start < end && Character.isWhitespace(performance.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(performance.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end || end - start > 2) {
+            return -1;
+        }
+        int grade = 0;
+        for (int i = start; i < end; i++) {
+            char ch = performance.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            grade = grade * 10 + (ch - '0');
+        }
+        return grade <= MAX_GRADE ? grade : -1;
+    }
+
+    /**
+     * Возвращает сводки всех классов в порядке номера класса, затем буквы (1А, 2Б, …, 10А).
+     */
+    public synchronized List<ClassSummary> summaries() {
+        List<ClassSummary> result = new ArrayList<>(classes.size());
+        for (Map.Entry<String, Aggregate> entry : classes.entrySet()) {
+            result.add(new ClassSummary(entry.getKey(), entry.getValue()));
+        }
+        result.sort((a, b) -> compareClassNames(a.getClassName(), b.getClassName()));
+        return result;
+    }
+
+    /**
+     * Возвращает сводку класса или null, если в классе нет учеников.
+     */
+    public synchronized ClassSummary summary(String className) {
+        String key = classKey(className);
+        Aggregate aggregate = classes.get(key);
+        return aggregate != null ? new ClassSummary(key, aggregate) : null;
+    }
+
+    /**
+     * Возвращает сводку по всей школе.
+     */
+    public synchronized ClassSummary total() {
+        return new ClassSummary("", school);
+    }
+
+    /**
+     * Сравнивает названия классов по числу в начале, затем по остатку строки.
+     */
+    static int compareClassNames(String a, String b) {
+        int digitsA = leadingDigits(a);
+        int digitsB = leadingDigits(b);
+        if (digitsA > 0 && digitsB > 0 && digitsA < 10 && digitsB < 10) {
+            int byNumber = Long.compare(Long.parseLong(a.substring(0, digitsA)), Long.parseLong(b.substring(0, digitsB)));
+            if (byNumber != 0) {
+                return byNumber;
+            }
+            return a.substring(digitsA).compareTo(b.substring(digitsB));
+        }
+        return a.compareTo(b);
+    }
+
+    private static int leadingDigits(String value) {
+        int digits = 0;
+        while (digits < value.length() && Character.isDigit(value.charAt(digits))) {
+            digits++;
+        }
+        return digits;
+    }
+}
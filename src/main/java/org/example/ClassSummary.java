@@ -0,0 +1,84 @@
+package org.example;
+
+/**
+ * Неизменяемая сводка успеваемости одного класса (или всей школы).
+ */
+final class ClassSummary {
+    private final String className;
+    private final int count;
+    private final int graded;
+    private final long sum;
+    private final int[] histogram;
+
+    ClassSummary(String className, ClassStatistics.Aggregate aggregate) {
+        this.className = className;
+        this.count = aggregate.count;
+        this.graded = aggregate.graded;
+        this.sum = aggregate.sum;
+        this.histogram = aggregate.histogram.clone();
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /** Число учеников. */
+    public int getCount() {
+        return count;
+    }
+
+    /** Число учеников с оценкой. */
+    public int getGraded() {
+        return graded;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /** Средняя оценка или null, если оценок нет. */
+    public Double getAverage() {
+        return graded > 0 ? (double) sum / graded : null;
+    }
+
+    /** Наименьшая оценка или null, если оценок нет. */
+    public Integer getMin() {
+        for (int grade = 0; grade < histogram.length; grade++) {
+            if (histogram[grade] > 0) {
+                return grade;
+            }
+        }
+        return null;
+    }
+
+    /** Наибольшая оценка или null, если оценок нет. */
+    public Integer getMax() {
+        for (int grade = histogram.length - 1; grade >= 0; grade--) {
+            if (histogram[grade] > 0) {
+                return grade;
+            }
+        }
+        return null;
+    }
+
+    /** Число учеников с указанной оценкой. */
+    public int getGradeCount(int grade) {
+        return grade >= 0 && grade < histogram.length ? histogram[grade] : 0;
+    }
+
+    /**
+     * Распределение оценок от высшей к низшей, например «5: 12, 4: 20, 3: 3».
+     */
+    public String getDistribution() {
+        StringBuilder result = new StringBuilder();
+        for (int grade = histogram.length - 1; grade >= 0; grade--) {
+            if (histogram[grade] > 0) {
+                if (result.length() > 0) {
+                    result.append(", ");
+                }
+                result.append(grade).append(": ").append(histogram[grade]);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+
+/**
+ * Источник данных сводного отчёта {@value #TEMPLATE}: строка на класс
+ * с полями class, students, graded, average, min, max и distribution.
+ */
+class ClassSummaryDataSource implements JRRewindableDataSource {
+    static final String TEMPLATE = "class_summary.jrxml";
+
+    private final List<ClassSummary> summaries;
+    private int position = -1;
+
+    public ClassSummaryDataSource(List<ClassSummary> summaries) {
+        this.summaries = summaries;
+    }
+
+    /**
+     * Параметры отчёта с итогами по школе: SCHOOL_STUDENTS, SCHOOL_GRADED, SCHOOL_AVERAGE, SCHOOL_DISTRIBUTION.
+     */
+    static Map<String, Object> parameters(ClassSummary total) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("SCHOOL_STUDENTS", total.getCount());
+        parameters.put("SCHOOL_GRADED", total.getGraded());
+        parameters.put("SCHOOL_AVERAGE", total.getAverage());
+        parameters.put("SCHOOL_DISTRIBUTION", total.getDistribution());
+        return parameters;
+    }
+
+    @Override
+    public boolean next() {
+        if (position + 1 >= summaries.size()) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) throws JRException {
+        ClassSummary summary = summaries.get(position);
+        switch (field.getName()) {
+            case "class":
+                return summary.getClassName();
+            case "students":
+                return summary.getCount();
+            case "graded":
+                return summary.getGraded();
+            case "average":
+                return summary.getAverage();
+            case "min":
+                return summary.getMin();
+            case "max":
+                return summary.getMax();
+            case "distribution":
+                return summary.getDistribution();
+            default:
+                throw new JRException("Неизвестное поле отчёта: " + field.getName());
+        }
+    }
+
+    @Override
+    public void moveFirst() {
+        position = -1;
+    }
+}
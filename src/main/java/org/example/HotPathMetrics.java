@@ -0,0 +1,295 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Метрики горячих путей: загрузки, сохранения, поиска, удаления, компиляции, заполнения и экспорта отчёта.
+ * Для каждой операции считаются вызовы, ошибки, обработанные записи, число выполняемых сейчас операций,
+ * пропускная способность за последнюю минуту и гистограмма длительности с логарифмическими корзинами
+ * (погрешность квантилей не больше 12,5%). Запись выполняется на {@link LongAdder} без блокировок,
+ * поэтому метрики собираются всегда. После {@link #registerMBeans()} операции видны в JConsole
+ * как MBean {@value #DOMAIN}:type=HotPath,name=&lt;операция&gt;.
+ */
+class HotPathMetrics {
+    private static final Logger log = Logger.getLogger(HotPathMetrics.class);
+
+    static final String DOMAIN = "org.example";
+
+    static final Operation LOAD = new Operation("load");
+    static final Operation SAVE = new Operation("save");
+    static final Operation SEARCH = new Operation("search");
+    static final Operation DELETE = new Operation("delete");
+    static final Operation COMPILE = new Operation("compile");
+    static final Operation FILL = new Operation("fill");
+    static final Operation EXPORT = new Operation("export");
+
+    private static final Operation[] ALL = {LOAD, SAVE, SEARCH, DELETE, COMPILE, FILL, EXPORT};
+
+    /**
+     * Регистрирует MBean всех операций на платформенном сервере MBean.
+     * Повторная регистрация ничего не делает.
+     */
+    static synchronized void registerMBeans() {
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        for (Operation operation : ALL) {
+            try {
+                javax.management.ObjectName name =
+                        new javax.management.ObjectName(DOMAIN + ":type=HotPath,name=" + operation.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(new javax.management.StandardMBean(operation, OperationMBean.class), name);
+                }
+            } catch (javax.management.JMException e) {
+                log.warn("Не удалось зарегистрировать метрики операции " + operation.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Атрибуты операции, доступные через JMX. Длительности — в миллисекундах.
+     */
+    public interface OperationMBean {
+        String getName();
+
+        long getCount();
+
+        long getErrors();
+
+        long getInFlight();
+
+        /** Обработано записей: строк для загрузки, сохранения, поиска и удаления, страниц для отчётов. */
+        long getRecords();
+
+        /** Среднее число успешных операций в секунду за последнюю минуту. */
+        double getThroughputPerSecond();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP90Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+
+        void reset();
+    }
+
+    /**
+     * Метрики одной операции.
+     */
+    static class Operation implements OperationMBean {
+        /** Корзин на каждую степень двойки. */
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+        /** Окно расчёта пропускной способности, секунд. */
+        private static final int WINDOW = 60;
+
+        private final String name;
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray windowSeconds = new AtomicLongArray(WINDOW);
+        private final AtomicLongArray windowCounts = new AtomicLongArray(WINDOW);
+
+        Operation(String name) {
+            this.name = name;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Начинает замер. Замер нужно закрыть; если до закрытия не вызван
+         * {@link Sample#succeeded(long)}, операция считается завершившейся ошибкой.
+         */
+        Sample start() {
+            inFlight.increment();
+            return new Sample(this, System.nanoTime());
+        }
+
+        private void finish(long startNanos, boolean success, long processed) {
+            long now = System.nanoTime();
+            long elapsed = Math.max(0, now - startNanos);
+            inFlight.decrement();
+            if (!success) {
+                errors.increment();
+                return;
+            }
+            count.increment();
+            records.add(processed);
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+            buckets[bucketOf(elapsed)].increment();
+
+            long second = now / 1_000_000_000L;
+            int slot = (int) Math.floorMod(second, (long) WINDOW);
+            long stamp = windowSeconds.get(slot);
+            if (stamp != second && windowSeconds.compareAndSet(slot, stamp, second)) {
+                windowCounts.set(slot, 0); // Слот остался от прошлой минуты
+            }
+            windowCounts.incrementAndGet(slot);
+        }
+
+        static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /** Середина диапазона значений корзины, нс. */
+        static long bucketMidpoint(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) / 2;
+        }
+
+        private double quantileMillis(double quantile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketMidpoint(i), maxNanos.get()) / 1e6;
+                }
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        @Override
+        public long getRecords() {
+            return records.sum();
+        }
+
+        @Override
+        public double getThroughputPerSecond() {
+            long second = System.nanoTime() / 1_000_000_000L;
+            long total = 0;
+            for (int slot = 0; slot < WINDOW; slot++) {
+                if (second - windowSeconds.get(slot) < WINDOW) {
+                    total += windowCounts.get(slot);
+                }
+            }
+            return total / (double) WINDOW;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return quantileMillis(0.5);
+        }
+
+        @Override
+        public double getP90Millis() {
+            return quantileMillis(0.9);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return quantileMillis(0.99);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            count.reset();
+            errors.reset();
+            records.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (int slot = 0; slot < WINDOW; slot++) {
+                windowCounts.set(slot, 0);
+            }
+        }
+    }
+
+    /**
+     * Замер одной операции для использования в try-with-resources.
+     */
+    static final class Sample implements AutoCloseable {
+        private final Operation operation;
+        private final long startNanos;
+        private boolean success;
+        private long processed;
+        private boolean closed;
+
+        private Sample(Operation operation, long startNanos) {
+            this.operation = operation;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Отмечает операцию как успешную.
+         *
+         * @param processed Число обработанных записей.
+         */
+        void succeeded(long processed) {
+            this.success = true;
+            this.processed = processed;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                operation.finish(startNanos, success, processed);
+            }
+        }
+    }
+}
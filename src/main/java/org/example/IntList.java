@@ -0,0 +1,129 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Растущий массив целых чисел без упаковки в Integer.
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1) + 1);
+        }
+        values[size++] = value;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Последний элемент списка или -1, если список пуст.
+     */
+    public int last() {
+        return size > 0 ? values[size - 1] : -1;
+    }
+
+    /**
+     * Вставляет значение в отсортированный список, если его там ещё нет.
+     */
+    public void insertSorted(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        add(0);
+        System.arraycopy(values, pos, values, pos + 1, size - pos - 1);
+        values[pos] = value;
+    }
+
+    /**
+     * Удаляет значение из отсортированного списка, если оно там есть.
+     */
+    public void removeSorted(int value) {
+        int pos = Arrays.binarySearch(values, 0, size, value);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+        size--;
+    }
+
+    /**
+     * Проверяет наличие значения в отсортированном списке.
+     */
+    public boolean containsSorted(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Ищет в отсортированном списке первую позицию не раньше from со значением не меньше value.
+     * Шаг поиска удваивается от from, поэтому проход по возрастающим значениям стоит
+     * логарифм расстояния между ними, а не размера списка.
+     *
+     * @return Найденная позиция или size(), если таких значений нет.
+     */
+    public int seek(int from, int value) {
+        int bound = 1;
+        while (from + bound < size && values[from + bound] < value) {
+            bound <<= 1;
+        }
+        int low = from + (bound >> 1);
+        int high = Math.min(from + bound, size);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Удаляет из отсортированного списка номера удалённых строк и сдвигает оставшиеся,
+     * как это делает хранилище при уплотнении.
+     *
+     * @param removedRows Отсортированные по возрастанию номера удалённых строк.
+     */
+    public void compact(int[] removedRows) {
+        int write = 0;
+        int shift = 0;
+        for (int read = 0; read < size; read++) {
+            int row = values[read];
+            while (shift < removedRows.length && removedRows[shift] < row) {
+                shift++;
+            }
+            if (shift < removedRows.length && removedRows[shift] == row) {
+                continue;
+            }
+            values[write++] = row - shift;
+        }
+        size = write;
+    }
+}
@@ -0,0 +1,10 @@
+package org.example;
+
+/**
+ * Исключение, выбрасываемое если загрузка данных была отменена пользователем.
+ */
+class LoadCancelledException extends Exception {
+    public LoadCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import java.util.HashMap;
+
+/**
+ * Хэш-таблица с открытой адресацией: ключ long → список строк.
+ * Используется индексом вместо HashMap, чтобы не упаковывать ключи в Long.
+ */
+class LongPostingMap {
+    private long[] keys = new long[64];
+    private IntList[] values = new IntList[64];
+    private int size;
+
+    public IntList get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    public IntList getOrCreate(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        IntList list = new IntList();
+        keys[i] = key;
+        values[i] = list;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return list;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /** Ключ в ячейке i (имеет смысл, только если {@link #valueAt(int)} не null). */
+    public long keyAt(int i) {
+        return keys[i];
+    }
+
+    public IntList valueAt(int i) {
+        return values[i];
+    }
+
+    /**
+     * Удаляет пустые списки и перестраивает таблицу.
+     */
+    public void removeEmpty() {
+        long[] oldKeys = keys;
+        IntList[] oldValues = values;
+        int live = 0;
+        for (IntList list : oldValues) {
+            if (list != null && !list.isEmpty()) {
+                live++;
+            }
+        }
+        int capacity = 64;
+        while (capacity < live * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new IntList[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null && !oldValues[i].isEmpty()) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        keys = new long[64];
+        values = new IntList[64];
+        size = 0;
+    }
+
+    private void put(long key, IntList list) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = list;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        IntList[] oldValues = values;
+        keys = new long[capacity];
+        values = new IntList[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -1,31 +1,39 @@
 package org.example;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import javax.swing.RowFilter;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.ChangeEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 // Импорты для работы с XML
-import org.w3c.dom.*;
-import javax.xml.parsers.*;
-import org.xml.sax.SAXException;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLStreamException;
 
 // Импорты для JasperReports
 import net.sf.jasperreports.engine.*;
-import net.sf.jasperreports.engine.data.JRXmlDataSource;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
 import net.sf.jasperreports.view.JasperViewer;
 import java.util.HashMap;
+import java.util.Map;
 
 // Импорт для логирования
 import org.apache.log4j.Logger;
@@ -43,21 +51,32 @@ public class Main {
 
     private JFrame frame;
     private JTable teacherTable, studentTable;
-    private DefaultTableModel teacherTableModel, studentTableModel;
+    private RecordTableModel teacherTableModel, studentTableModel;
     private JPanel filterPanel;
     private JButton addTeacherButton, addStudentButton, deleteTeacherButton, deleteStudentButton, generateReportButton;
-    private JButton searchButton, resetButton, loadButton, saveButton;
+    private JButton classSummaryButton;
+    private JButton searchButton, resetButton, loadButton, saveButton, cancelLoadButton;
+    private JProgressBar loadProgressBar;
     private JComboBox<String> searchCriteria;
     private JTextField searchField;
+    private JCheckBox liveSearchBox;
+    private LiveSearchController liveSearch; // Поиск при вводе
+    private AutosaveService autosave; // Автосохранение в текущий файл
     private JScrollPane teacherScrollPane, studentScrollPane;
     private JTabbedPane tabbedPane;
-    private List<String[]> originalTeacherData; // Исходные данные учителей
-    private List<String[]> originalStudentData; // Исходные данные учеников
-    private TableRowSorter<DefaultTableModel> teacherSorter, studentSorter;
-
-    // CountDownLatch для синхронизации потоков
-    private final CountDownLatch loadLatch = new CountDownLatch(1);
-    private final CountDownLatch saveLatch = new CountDownLatch(1);
+    private RecordStore teacherStore; // Колоночное хранилище учителей
+    private RecordStore studentStore; // Колоночное хранилище учеников
+    private final ClassStatistics classStatistics = new ClassStatistics(1, 2); // Сводка успеваемости по классам
+    private TableRowSorter<RecordTableModel> teacherSorter, studentSorter;
+    private volatile XmlStreamLoader currentLoader; // Текущий потоковый загрузчик (для отмены)
+    private final ReportTemplateCache reportTemplateCache = new ReportTemplateCache(); // Кэш скомпилированных шаблонов
+    private final ReportResultCache reportResultCache = new ReportResultCache(); // Кэш готовых отчётов
+    private volatile ChangeJournal journal; // Журнал изменений текущего файла данных (изменяется в EDT)
+    private final AtomicBoolean compactingJournal = new AtomicBoolean();
+    private SchoolHttpServer httpServer; // Встроенный HTTP-сервис (если задан порт)
+
+    // Конвейер этапов загрузка → сохранение → отчёт
+    private final TaskPipeline pipeline = new TaskPipeline();
 
     /**
      * Метод для создания и отображения основного окна программы.
@@ -65,14 +84,21 @@ public class Main {
     public void SchoolManagementSystem() {
         log.info("Запуск программы - Система Управления Школой");
 
-        // Инициализация исходных данных
-        originalTeacherData = new ArrayList<>();
-        originalStudentData = new ArrayList<>();
+        // Инициализация хранилищ данных: ФИО, предмет (словарь), классы (словарь)
+        teacherStore = RecordStore.forTeachers();
+        // ФИО, класс (словарь), успеваемость (число)
+        studentStore = RecordStore.forStudents();
 
         // Создание главного окна программы
         frame = new JFrame("Система Управления Школой");
         frame.setSize(1000, 700); // Увеличиваем размер окна для двух таблиц
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Закрытие окна завершает программу
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeJournal(); // Дожидается записи изменений из очереди журнала до выхода
+            }
+        });
         frame.setLayout(new BorderLayout()); // Устанавливаем BorderLayout для главного окна
 
         // Создание панели инструментов с кнопками действий
@@ -84,10 +110,18 @@ public class Main {
         deleteTeacherButton = new JButton("Удалить учителя");
         deleteStudentButton = new JButton("Удалить ученика");
         generateReportButton = new JButton("Создать отчёт");
+        classSummaryButton = new JButton("Сводка по классам");
 
         // Кнопки загрузки и сохранения данных
         loadButton = new JButton("Загрузить данные");
         saveButton = new JButton("Сохранить данные");
+        cancelLoadButton = new JButton("Отменить загрузку");
+        cancelLoadButton.setEnabled(false);
+
+        // Индикатор прогресса загрузки
+        loadProgressBar = new JProgressBar(0, 100);
+        loadProgressBar.setStringPainted(true);
+        loadProgressBar.setString("");
 
         // Добавляем кнопки на панель инструментов слева
         actionPanel.add(addTeacherButton);
@@ -95,11 +129,14 @@ public class Main {
         actionPanel.add(deleteTeacherButton);
         actionPanel.add(deleteStudentButton);
         actionPanel.add(generateReportButton);
+        actionPanel.add(classSummaryButton);
 
         // Добавляем гибкое пространство, чтобы следующие кнопки были справа
         actionPanel.add(Box.createHorizontalGlue());
 
         // Добавляем кнопки загрузки и сохранения данных справа
+        actionPanel.add(loadProgressBar);
+        actionPanel.add(cancelLoadButton);
         actionPanel.add(loadButton);
         actionPanel.add(saveButton);
 
@@ -109,7 +146,7 @@ public class Main {
         String[] teacherColumns = {"ФИО учителя", "Предмет", "Классы"};
 
         // Инициализация модели таблицы учителей
-        teacherTableModel = new DefaultTableModel(teacherColumns, 0);
+        teacherTableModel = new RecordTableModel(teacherStore, teacherColumns);
         teacherTable = new JTable(teacherTableModel);
         teacherTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // Разрешаем множественный выбор
         teacherScrollPane = new JScrollPane(teacherTable);
@@ -123,7 +160,8 @@ public class Main {
         String[] studentColumns = {"ФИО ученика", "Класс", "Успеваемость"};
 
         // Инициализация модели таблицы учеников
-        studentTableModel = new DefaultTableModel(studentColumns, 0);
+        studentTableModel = new RecordTableModel(studentStore, studentColumns);
+        studentTableModel.addObserver(classStatistics); // Сводка обновляется при каждом изменении учеников
         studentTable = new JTable(studentTableModel);
         studentTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // Разрешаем множественный выбор
         studentScrollPane = new JScrollPane(studentTable);
@@ -144,6 +182,7 @@ public class Main {
         searchField = new JTextField(20);
         searchButton = new JButton("Поиск");
         resetButton = new JButton("Сбросить");
+        liveSearchBox = new JCheckBox("Поиск при вводе", true);
 
         // Панель фильтрации
         filterPanel = new JPanel();
@@ -153,6 +192,7 @@ public class Main {
         filterPanel.add(searchField);
         filterPanel.add(searchButton);
         filterPanel.add(resetButton);
+        filterPanel.add(liveSearchBox);
         frame.add(filterPanel, BorderLayout.SOUTH); // Размещаем панель фильтрации снизу
 
         // Действие при переключении вкладок для обновления критериев поиска
@@ -172,6 +212,9 @@ public class Main {
         // Установка начального состояния кнопок
         setInitialButtonStates();
 
+        // HTTP-сервис для других программ, если задан порт
+        startHttpServer();
+
         // Логирование успешного запуска
         log.info("Главное окно отображено");
 
@@ -190,6 +233,7 @@ public class Main {
         deleteStudentButton.setEnabled(false);
         saveButton.setEnabled(false);
         generateReportButton.setEnabled(false);
+        classSummaryButton.setEnabled(false);
     }
 
     /**
@@ -205,6 +249,34 @@ public class Main {
             }
         });
 
+        // Поиск при вводе: запросы из поля поиска выполняются в фоне с задержкой
+        liveSearch = new LiveSearchController();
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                liveSearch.schedule();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                liveSearch.schedule();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                liveSearch.schedule();
+            }
+        });
+        // Правки ячеек таблиц записываются в журнал изменений, любые изменения — откладывают автосохранение
+        autosave = new AutosaveService();
+        teacherTableModel.addTableModelListener(e -> recordCellEdit(ChangeJournal.TEACHERS, teacherTableModel, e));
+        studentTableModel.addTableModelListener(e -> recordCellEdit(ChangeJournal.STUDENTS, studentTableModel, e));
+        teacherTableModel.addTableModelListener(e -> autosave.changed());
+        studentTableModel.addTableModelListener(e -> autosave.changed());
+
+        searchCriteria.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                liveSearch.schedule();
+            }
+        });
+
         // Слушатель для кнопки "Сбросить"
         resetButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
@@ -244,8 +316,21 @@ public class Main {
         loadButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 setButtonStatesDuringLoad(true);
-                Thread loadThread = new Thread(new LoadDataThread(Main.this, loadLatch), "LoadDataThread");
-                loadThread.start();
+                startLoad();
+            }
+        });
+
+        // Слушатель для кнопки "Отменить загрузку"
+        cancelLoadButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                XmlStreamLoader loader = currentLoader;
+                if (loader != null) {
+                    // Чтение уже идёт: загрузчик остановится на ближайшей записи
+                    loader.cancel();
+                } else {
+                    pipeline.cancel(Stage.LOAD);
+                }
+                log.info("Запрошена отмена загрузки данных");
             }
         });
 
@@ -253,16 +338,21 @@ public class Main {
         saveButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
                 generateReportButton.setEnabled(false);
-                Thread saveThread = new Thread(new SaveDataThread(Main.this, loadLatch, saveLatch), "SaveDataThread");
-                saveThread.start();
+                startEditAndSave();
             }
         });
 
         // Слушатель для кнопки "Создать отчёт"
         generateReportButton.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                Thread reportThread = new Thread(new GenerateReportThread(Main.this, saveLatch), "GenerateReportThread");
-                reportThread.start();
+                startReport();
+            }
+        });
+
+        // Слушатель для кнопки "Сводка по классам"
+        classSummaryButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showClassSummary();
             }
         });
     }
@@ -273,13 +363,16 @@ public class Main {
      * @param isLoading true, если данные загружаются; false иначе.
      */
     private void setButtonStatesDuringLoad(boolean isLoading) {
-        addTeacherButton.setEnabled(!isLoading && loadLatch.getCount() == 0);
-        addStudentButton.setEnabled(!isLoading && loadLatch.getCount() == 0);
-        deleteTeacherButton.setEnabled(!isLoading && loadLatch.getCount() == 0);
-        deleteStudentButton.setEnabled(!isLoading && loadLatch.getCount() == 0);
-        saveButton.setEnabled(!isLoading && loadLatch.getCount() == 0);
+        boolean loaded = pipeline.hasCompleted(Stage.LOAD);
+        addTeacherButton.setEnabled(!isLoading && loaded);
+        addStudentButton.setEnabled(!isLoading && loaded);
+        deleteTeacherButton.setEnabled(!isLoading && loaded);
+        deleteStudentButton.setEnabled(!isLoading && loaded);
+        saveButton.setEnabled(!isLoading && loaded);
+        classSummaryButton.setEnabled(!isLoading && loaded);
         generateReportButton.setEnabled(false);
         loadButton.setEnabled(!isLoading); // Разрешаем повторную загрузку
+        cancelLoadButton.setEnabled(isLoading);
     }
 
     /**
@@ -294,15 +387,19 @@ public class Main {
             deleteTeacherButton.setEnabled(true);
             deleteStudentButton.setEnabled(true);
             saveButton.setEnabled(true);
+            classSummaryButton.setEnabled(true);
         } else {
             addTeacherButton.setEnabled(false);
             addStudentButton.setEnabled(false);
             deleteTeacherButton.setEnabled(false);
             deleteStudentButton.setEnabled(false);
             saveButton.setEnabled(false);
+            classSummaryButton.setEnabled(false);
         }
         // Кнопка создания отчёта остаётся отключённой до сохранения
         generateReportButton.setEnabled(false);
+        loadButton.setEnabled(true);
+        cancelLoadButton.setEnabled(false);
     }
 
     /**
@@ -337,50 +434,86 @@ public class Main {
         }
 
         int selectedIndex = tabbedPane.getSelectedIndex();
+        int columnIndex = getSearchColumnIndex(selectedIndex, criterion);
+        if (columnIndex == -1) {
+            return;
+        }
+        // Ручной поиск заменяет результат фонового поиска при вводе
+        liveSearch.cancel();
 
         if (selectedIndex == 0) { // Учителя
-            int columnIndex = -1;
+            teacherSorter.setRowFilter(createIndexFilter(teacherTableModel, columnIndex, value));
+            if (log.isDebugEnabled()) {
+                log.debug("Выполнен поиск учителей по критерию: " + criterion + " с значением: " + value);
+            }
+        } else if (selectedIndex == 1) { // Ученики
+            studentSorter.setRowFilter(createIndexFilter(studentTableModel, columnIndex, value));
+            if (log.isDebugEnabled()) {
+                log.debug("Выполнен поиск учеников по критерию: " + criterion + " с значением: " + value);
+            }
+        }
+    }
+
+    /**
+     * Возвращает индекс столбца таблицы для критерия поиска.
+     *
+     * @param tabIndex  Индекс вкладки (0 — учителя, 1 — ученики).
+     * @param criterion Критерий поиска.
+     * @return Индекс столбца или -1, если критерий не относится к вкладке.
+     */
+    private int getSearchColumnIndex(int tabIndex, String criterion) {
+        if (criterion == null) {
+            return -1;
+        }
+        if (tabIndex == 0) { // Учителя
             switch (criterion) {
                 case "ФИО учителя":
-                    columnIndex = 0;
-                    break;
+                    return 0;
                 case "Предмет":
-                    columnIndex = 1;
-                    break;
+                    return 1;
                 case "Классы":
-                    columnIndex = 2;
-                    break;
-            }
-
-            if (columnIndex != -1) {
-                teacherSorter.setRowFilter(RowFilter.regexFilter("(?i)" + value, columnIndex));
-                log.info("Выполнен поиск учителей по критерию: " + criterion + " с значением: " + value);
+                    return 2;
             }
-        } else if (selectedIndex == 1) { // Ученики
-            int columnIndex = -1;
+        } else if (tabIndex == 1) { // Ученики
             switch (criterion) {
                 case "ФИО ученика":
-                    columnIndex = 0;
-                    break;
+                    return 0;
                 case "Класс ученика":
-                    columnIndex = 1;
-                    break;
+                    return 1;
                 case "Успеваемость":
-                    columnIndex = 2;
-                    break;
+                    return 2;
             }
+        }
+        return -1;
+    }
 
-            if (columnIndex != -1) {
-                studentSorter.setRowFilter(RowFilter.regexFilter("(?i)" + value, columnIndex));
-                log.info("Выполнен поиск учеников по критерию: " + criterion + " с значением: " + value);
-            }
+    /**
+     * Создаёт фильтр строк по результату поиска в триграммном индексе модели.
+     * Поиск подстроки выполняется без учёта регистра; значение, начинающееся с символа '^',
+     * ищется как префикс.
+     *
+     * @param tableModel  Модель таблицы.
+     * @param columnIndex Индекс столбца.
+     * @param value       Значение для поиска.
+     * @return Фильтр строк, пропускающий найденные строки модели.
+     */
+    private RowFilter<RecordTableModel, Integer> createIndexFilter(RecordTableModel tableModel, int columnIndex, String value) {
+        boolean prefix = value.startsWith("^") && value.length() > 1;
+        String query = prefix ? value.substring(1) : value;
+        long start = System.nanoTime();
+        long modCount = tableModel.getModCount();
+        BitSet rows = tableModel.find(columnIndex, query, prefix);
+        if (log.isDebugEnabled()) {
+            log.debug("Поиск по индексу: найдено " + rows.cardinality() + " строк за " + (System.nanoTime() - start) / 1000 + " мкс");
         }
+        return new BitSetRowFilter(tableModel, columnIndex, query, prefix, rows, modCount);
     }
 
     /**
      * Метод для сброса фильтров и восстановления исходных данных.
      */
     private void resetTable() {
+        liveSearch.cancel();
         // Сброс фильтра для учителей
         teacherSorter.setRowFilter(null);
         // Сброс фильтра для учеников
@@ -392,145 +525,227 @@ public class Main {
 
     /**
      * Метод для загрузки данных из файла, выбранного пользователем.
+     * Файл читается потоково через {@link XmlStreamLoader}, без построения DOM-дерева.
+     *
+     * @throws CancellationException если пользователь не выбрал файл или прервал загрузку.
+     * @throws IllegalStateException если файл не удалось загрузить; этап загрузки считается незавершённым.
      */
     private void loadDataFromFile() {
         JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setDialogTitle("Выберите XML-файл для загрузки данных");
+        fileChooser.setDialogTitle("Выберите XML-файл или снимок для загрузки данных");
         int userSelection = fileChooser.showOpenDialog(frame);
 
         if (userSelection == JFileChooser.APPROVE_OPTION) {
             File xmlFile = fileChooser.getSelectedFile();
+            if (BinarySnapshot.isSnapshot(xmlFile)) {
+                loadSnapshot(xmlFile);
+                return;
+            }
+            // Большие файлы разбираются параллельно по частям
+            XmlStreamLoader loader = xmlFile.length() >= ParallelXmlLoader.PARALLEL_THRESHOLD
+                    ? new ParallelXmlLoader() : new XmlStreamLoader();
+            currentLoader = loader;
             try {
                 log.info("Загрузка данных из файла: " + xmlFile.getAbsolutePath());
 
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.parse(xmlFile);
-
-                // Нормализация документа
-                doc.getDocumentElement().normalize();
-
                 // Очистка текущих данных в таблицах и исходных списках
                 SwingUtilities.invokeLater(() -> {
-                    teacherTableModel.setRowCount(0);
-                    studentTableModel.setRowCount(0);
-                    originalTeacherData.clear();
-                    originalStudentData.clear();
+                    closeJournal();
+                    teacherTableModel.clear();
+                    studentTableModel.clear();
+                    loadProgressBar.setValue(0);
+                    loadProgressBar.setString("0%");
                 });
 
-                // Загрузка учителей
-                NodeList teacherList = doc.getElementsByTagName("teacher");
-                for (int i = 0; i < teacherList.getLength(); i++) {
-                    Element teacherElement = (Element) teacherList.item(i);
-                    String name = teacherElement.getAttribute("name");
-                    String subject = teacherElement.getAttribute("subject");
-                    String classes = teacherElement.getAttribute("classes");
-
-                    String[] teacher = {name, subject, classes};
+                // Записи передаются в EDT пачками, а не по одной
+                RowBatchPublisher publisher = new RowBatchPublisher();
+                try {
+                    loader.load(xmlFile, publisher, this::showLoadProgress);
+                } catch (UnsupportedLayoutException e) {
+                    // Файл нельзя разбить на части — повторяем загрузку последовательным разбором
+                    log.info("Параллельная загрузка невозможна (" + e.getMessage() + "), используется потоковый разбор");
+                    publisher.discard();
                     SwingUtilities.invokeLater(() -> {
-                        teacherTableModel.addRow(teacher);
-                        originalTeacherData.add(teacher);
-                    });
-                }
-
-                // Загрузка учеников
-                NodeList studentList = doc.getElementsByTagName("student");
-                for (int i = 0; i < studentList.getLength(); i++) {
-                    Element studentElement = (Element) studentList.item(i);
-                    String name = studentElement.getAttribute("name");
-                    String studentClass = studentElement.getAttribute("class");
-                    String performance = studentElement.getAttribute("performance");
-
-                    String[] student = {name, studentClass, performance};
-                    SwingUtilities.invokeLater(() -> {
-                        studentTableModel.addRow(student);
-                        originalStudentData.add(student);
+                        teacherTableModel.clear();
+                        studentTableModel.clear();
                     });
+                    XmlStreamLoader sequential = new XmlStreamLoader();
+                    currentLoader = sequential;
+                    if (loader.isCancelled()) {
+                        sequential.cancel();
+                    }
+                    sequential.load(xmlFile, publisher, this::showLoadProgress);
+                } finally {
+                    publisher.flush();
                 }
+                ChangeJournal opened = openJournal(xmlFile);
 
                 SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(frame, "Данные успешно загружены из XML-файла.", "Успех", JOptionPane.INFORMATION_MESSAGE);
+                    int replayed = replayJournal(opened);
+                    loadProgressBar.setValue(100);
+                    loadProgressBar.setString("100%");
+                    JOptionPane.showMessageDialog(frame, "Данные успешно загружены из XML-файла."
+                            + (replayed > 0 ? "\nВосстановлено несохранённых изменений: " + replayed : ""),
+                            "Успех", JOptionPane.INFORMATION_MESSAGE);
                     setButtonStatesAfterLoad(true);
                     log.info("Данные успешно загружены");
                 });
 
-            } catch (ParserConfigurationException | SAXException | IOException e) {
+            } catch (LoadCancelledException e) {
                 SwingUtilities.invokeLater(() -> {
+                    loadProgressBar.setString("Отменено");
+                    JOptionPane.showMessageDialog(frame, e.getMessage(), "Загрузка отменена", JOptionPane.WARNING_MESSAGE);
+                    setButtonStatesAfterLoad(teacherStore.size() + studentStore.size() > 0);
+                });
+                throw new CancellationException("загрузка данных прервана пользователем: " + e.getMessage());
+            } catch (XMLStreamException | IOException e) {
+                SwingUtilities.invokeLater(() -> {
+                    loadProgressBar.setString("Ошибка");
                     JOptionPane.showMessageDialog(frame, "Ошибка при загрузке данных: " + e.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+                    setButtonStatesAfterLoad(false);
                 });
-                log.error("Ошибка при загрузке данных: " + e.getMessage(), e);
+                // Ошибку записывает в журнал конвейер
+                throw new IllegalStateException("Ошибка при загрузке данных: " + e.getMessage(), e);
+            } finally {
+                currentLoader = null;
+            }
+        } else {
+            SwingUtilities.invokeLater(() -> setButtonStatesAfterLoad(teacherStore.size() + studentStore.size() > 0));
+            throw new CancellationException("файл для загрузки не выбран");
+        }
+    }
+
+    /**
+     * Загружает данные из двоичного снимка через отображение файла в память.
+     *
+     * @param snapshotFile Файл снимка.
+     * @throws CancellationException если пользователь прервал загрузку.
+     * @throws IllegalStateException если снимок не удалось загрузить.
+     */
+    private void loadSnapshot(File snapshotFile) {
+        // Снимок читается без XML-разбора; загрузчик служит только признаком отмены для кнопки
+        XmlStreamLoader cancellation = new XmlStreamLoader();
+        currentLoader = cancellation;
+        try {
+            log.info("Загрузка снимка данных из файла: " + snapshotFile.getAbsolutePath());
+            SwingUtilities.invokeLater(() -> {
+                closeJournal();
+                teacherTableModel.clear();
+                studentTableModel.clear();
+                loadProgressBar.setValue(0);
+                loadProgressBar.setString("0%");
+            });
+
+            RowBatchPublisher publisher = new RowBatchPublisher();
+            try {
+                BinarySnapshot.read(snapshotFile, publisher, this::showLoadProgress, cancellation::isCancelled);
+            } finally {
+                publisher.flush();
             }
+            ChangeJournal opened = openJournal(snapshotFile);
+
+            SwingUtilities.invokeLater(() -> {
+                int replayed = replayJournal(opened);
+                loadProgressBar.setValue(100);
+                loadProgressBar.setString("100%");
+                JOptionPane.showMessageDialog(frame, "Данные успешно загружены из снимка."
+                        + (replayed > 0 ? "\nВосстановлено несохранённых изменений: " + replayed : ""),
+                        "Успех", JOptionPane.INFORMATION_MESSAGE);
+                setButtonStatesAfterLoad(true);
+                log.info("Снимок данных успешно загружен");
+            });
+        } catch (LoadCancelledException e) {
+            SwingUtilities.invokeLater(() -> {
+                loadProgressBar.setString("Отменено");
+                JOptionPane.showMessageDialog(frame, e.getMessage(), "Загрузка отменена", JOptionPane.WARNING_MESSAGE);
+                setButtonStatesAfterLoad(teacherStore.size() + studentStore.size() > 0);
+            });
+            throw new CancellationException("загрузка снимка прервана пользователем: " + e.getMessage());
+        } catch (IOException e) {
+            SwingUtilities.invokeLater(() -> {
+                loadProgressBar.setString("Ошибка");
+                JOptionPane.showMessageDialog(frame, "Ошибка при загрузке снимка: " + e.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+                setButtonStatesAfterLoad(false);
+            });
+            throw new IllegalStateException("Ошибка при загрузке снимка: " + e.getMessage(), e);
+        } finally {
+            currentLoader = null;
         }
     }
 
+    /**
+     * Отображает прогресс загрузки на индикаторе. Вызывается из потока загрузки.
+     *
+     * @param bytesRead  Количество прочитанных байт.
+     * @param totalBytes Размер файла в байтах.
+     * @param teachers   Количество прочитанных учителей.
+     * @param students   Количество прочитанных учеников.
+     */
+    private void showLoadProgress(long bytesRead, long totalBytes, int teachers, int students) {
+        int percent = totalBytes > 0 ? (int) Math.min(100, bytesRead * 100 / totalBytes) : 0;
+        SwingUtilities.invokeLater(() -> {
+            loadProgressBar.setValue(percent);
+            loadProgressBar.setString(percent + "% (" + (teachers + students) + " записей)");
+        });
+    }
+
     /**
      * Метод для сохранения данных в файл, выбранный пользователем.
+     * Данные записываются потоково через {@link XmlStreamSaver}, без построения DOM-документа.
      */
     private void saveDataToFile() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Сохраните данные в XML-файл");
+        // Форматирование XML необязательно: без отступов файл записывается быстрее и занимает меньше места
+        JCheckBox prettyPrintBox = new JCheckBox("Форматировать XML", true);
+        fileChooser.setAccessory(prettyPrintBox);
+        // Кроме XML доступен двоичный снимок для быстрой загрузки
+        javax.swing.filechooser.FileNameExtensionFilter xmlFilter =
+                new javax.swing.filechooser.FileNameExtensionFilter("XML файлы", "xml");
+        javax.swing.filechooser.FileNameExtensionFilter snapshotFilter =
+                new javax.swing.filechooser.FileNameExtensionFilter("Двоичный снимок", BinarySnapshot.EXTENSION);
+        fileChooser.addChoosableFileFilter(xmlFilter);
+        fileChooser.addChoosableFileFilter(snapshotFilter);
+        fileChooser.setFileFilter(xmlFilter);
         int userSelection = fileChooser.showSaveDialog(frame);
 
         if (userSelection == JFileChooser.APPROVE_OPTION) {
             File xmlFile = fileChooser.getSelectedFile();
+            boolean snapshot = fileChooser.getFileFilter() == snapshotFilter
+                    || xmlFile.getName().toLowerCase().endsWith("." + BinarySnapshot.EXTENSION);
+            if (snapshot && !xmlFile.getName().toLowerCase().endsWith("." + BinarySnapshot.EXTENSION)) {
+                xmlFile = new File(xmlFile.getPath() + "." + BinarySnapshot.EXTENSION);
+            }
             try {
                 log.info("Сохранение данных в файл: " + xmlFile.getAbsolutePath());
 
-                // Создание фабрики и построителя документов
-                DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-
-                // Создание нового документа
-                Document doc = docBuilder.newDocument();
-
-                // Создание корневого элемента <school>
-                Element rootElement = doc.createElement("school");
-                doc.appendChild(rootElement);
-
-                // Создание элемента <teachers>
-                Element teachersElement = doc.createElement("teachers");
-                rootElement.appendChild(teachersElement);
-
-                // Добавление каждого учителя как элемента <teacher>
-                for (String[] teacher : originalTeacherData) {
-                    Element teacherElement = doc.createElement("teacher");
-                    teacherElement.setAttribute("name", teacher[0]);
-                    teacherElement.setAttribute("subject", teacher[1]);
-                    teacherElement.setAttribute("classes", teacher[2]);
-                    teachersElement.appendChild(teacherElement);
-                }
-
-                // Создание элемента <students>
-                Element studentsElement = doc.createElement("students");
-                rootElement.appendChild(studentsElement);
-
-                // Добавление каждого ученика как элемента <student>
-                for (String[] student : originalStudentData) {
-                    Element studentElement = doc.createElement("student");
-                    studentElement.setAttribute("name", student[0]);
-                    studentElement.setAttribute("class", student[1]);
-                    studentElement.setAttribute("performance", student[2]);
-                    studentsElement.appendChild(studentElement);
+                // Сохраняется состояние на момент нажатия; правки во время записи его не затрагивают
+                // и остаются в журнале, который после сохранения относится к новому файлу
+                SavePoint point = takeSavePoint();
+                long version = point.teachers.getVersion() + point.students.getVersion();
+                boolean prettyPrint = prettyPrintBox.isSelected();
+                if (point.journal != null) {
+                    File target = xmlFile;
+                    point.journal.checkpoint(target, point.journalPosition, file -> writeDataContent(file, target, point, prettyPrint));
+                } else {
+                    writeDataFile(xmlFile, point, prettyPrint);
+                    ChangeJournal created = ChangeJournal.create(xmlFile);
+                    SwingUtilities.invokeLater(() -> {
+                        closeJournal();
+                        journal = created;
+                    });
                 }
 
-                // Создание преобразователя и запись документа в файл
-                TransformerFactory transformerFactory = TransformerFactory.newInstance();
-                Transformer transformer = transformerFactory.newTransformer();
-                // Для красивого форматирования XML
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-                DOMSource source = new DOMSource(doc);
-
-                StreamResult result = new StreamResult(xmlFile);
-                transformer.transform(source, result);
-
                 SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(frame, "Данные успешно сохранены в XML-файл.", "Успех", JOptionPane.INFORMATION_MESSAGE);
+                    autosave.setPrettyPrint(prettyPrint);
+                    autosave.markSaved(version);
+                    JOptionPane.showMessageDialog(frame, snapshot ? "Данные успешно сохранены в двоичный снимок."
+                            : "Данные успешно сохранены в XML-файл.", "Успех", JOptionPane.INFORMATION_MESSAGE);
                     generateReportButton.setEnabled(true);
                     log.info("Данные успешно сохранены");
                 });
 
-            } catch (ParserConfigurationException | TransformerException e) {
+            } catch (IOException e) {
                 SwingUtilities.invokeLater(() -> {
                     JOptionPane.showMessageDialog(frame, "Ошибка при сохранении данных: " + e.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
                 });
@@ -539,6 +754,232 @@ public class Main {
         }
     }
 
+    /**
+     * Согласованное состояние данных: снимки хранилищ и позиция журнала, которой они соответствуют.
+     */
+    private static final class SavePoint {
+        final RecordSnapshot teachers;
+        final RecordSnapshot students;
+        final ChangeJournal journal;
+        final long journalPosition;
+
+        SavePoint(RecordSnapshot teachers, RecordSnapshot students, ChangeJournal journal, long journalPosition) {
+            this.teachers = teachers;
+            this.students = students;
+            this.journal = journal;
+            this.journalPosition = journalPosition;
+        }
+    }
+
+    /**
+     * Делает согласованные снимки хранилищ учителей и учеников вместе с позицией журнала.
+     * Снимки создаются в EDT, где изменяются хранилища; фоновый поток ждёт только их создания.
+     */
+    private SavePoint takeSavePoint() {
+        SavePoint[] point = new SavePoint[1];
+        Runnable snapshot = () -> {
+            ChangeJournal current = journal;
+            long position = -1;
+            if (current != null) {
+                try {
+                    position = current.position();
+                } catch (IOException e) {
+                    log.error("Не удалось определить позицию журнала: " + e.getMessage(), e);
+                    current = null;
+                }
+            }
+            point[0] = new SavePoint(teacherStore.snapshot(), studentStore.snapshot(), current, position);
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            snapshot.run();
+        } else {
+            try {
+                SwingUtilities.invokeAndWait(snapshot);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Поток прерван при создании снимка данных");
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                throw new IllegalStateException("Не удалось создать снимок данных", e.getCause());
+            }
+        }
+        return point[0];
+    }
+
+    /**
+     * Записывает файл данных целиком: сначала во временный файл, затем заменяет им целевой,
+     * чтобы сбой во время записи не испортил прежний файл. Формат определяется по расширению.
+     *
+     * @param target      Файл данных.
+     * @param point       Записываемое состояние.
+     * @param prettyPrint true для XML с отступами.
+     * @throws IOException при ошибке записи.
+     */
+    private static void writeDataFile(File target, SavePoint point, boolean prettyPrint) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try {
+            writeDataContent(temp, target, point, prettyPrint);
+            java.nio.file.Files.move(temp.toPath(), target.toPath(),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Записывает содержимое файла данных в file и сбрасывает его на диск, не заменяя target.
+     * Используется при контрольной точке журнала, который сам переносит файл на место.
+     *
+     * @param file        Файл, в который записываются данные (обычно временный).
+     * @param target      Файл данных, по расширению которого выбирается формат.
+     * @param point       Записываемое состояние.
+     * @param prettyPrint true для XML с отступами.
+     * @throws IOException при ошибке записи.
+     */
+    private static void writeDataContent(File file, File target, SavePoint point, boolean prettyPrint) throws IOException {
+        try {
+            if (target.getName().toLowerCase().endsWith("." + BinarySnapshot.EXTENSION)) {
+                BinarySnapshot.write(file, point.teachers, point.students);
+            } else {
+                new XmlStreamSaver(prettyPrint).save(file, point.teachers, point.students);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Ошибка формирования XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Открывает журнал изменений загруженного файла. Ошибка журнала не мешает загрузке.
+     *
+     * @return Журнал или null, если его не удалось открыть.
+     */
+    private ChangeJournal openJournal(File baseFile) {
+        try {
+            return ChangeJournal.open(baseFile);
+        } catch (IOException e) {
+            log.error("Не удалось открыть журнал изменений: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Воспроизводит несохранённые изменения из журнала и начинает записывать в него новые.
+     * Вызывается в EDT после загрузки файла данных.
+     *
+     * @return Количество воспроизведённых записей.
+     */
+    private int replayJournal(ChangeJournal opened) {
+        if (opened == null) {
+            return 0;
+        }
+        List<ChangeJournal.Entry> entries = opened.takeRecovered();
+        autosave.markClean(); // Загруженные данные совпадают с файлом; восстановленные правки сохранятся автоматически
+        RecordTableModel[] models = {teacherTableModel, studentTableModel};
+        List<String[]> added = new ArrayList<>();
+        int addedTable = -1;
+        for (ChangeJournal.Entry entry : entries) {
+            // Подряд идущие добавления применяются одной пачкой
+            if (entry.type == ChangeJournal.ADD && entry.table == addedTable) {
+                added.add(entry.values);
+                continue;
+            }
+            if (addedTable >= 0) {
+                models[addedTable].appendRows(added);
+                added = new ArrayList<>();
+                addedTable = -1;
+            }
+            RecordTableModel model = models[entry.table];
+            switch (entry.type) {
+                case ChangeJournal.ADD:
+                    added.add(entry.values);
+                    addedTable = entry.table;
+                    break;
+                case ChangeJournal.DELETE:
+                    model.removeRows(entry.rows);
+                    break;
+                default:
+                    model.setValueAt(entry.value, entry.row, entry.column);
+                    break;
+            }
+        }
+        if (addedTable >= 0) {
+            models[addedTable].appendRows(added);
+        }
+        journal = opened; // Записи журнала применяются до его подключения, поэтому не дублируются
+        if (!entries.isEmpty()) {
+            log.info("Из журнала восстановлено изменений: " + entries.size());
+        }
+        return entries.size();
+    }
+
+    /**
+     * Закрывает журнал изменений текущего файла. Вызывается в EDT.
+     */
+    private void closeJournal() {
+        ChangeJournal current = journal;
+        journal = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.warn("Ошибка при закрытии журнала изменений: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Записывает в журнал правку ячейки. Событие одной ячейки модель порождает только в setValueAt.
+     */
+    private void recordCellEdit(int table, RecordTableModel model, TableModelEvent e) {
+        if (e.getType() == TableModelEvent.UPDATE && e.getColumn() != TableModelEvent.ALL_COLUMNS
+                && e.getFirstRow() == e.getLastRow()) {
+            int row = e.getFirstRow();
+            int column = e.getColumn();
+            String value = (String) model.getValueAt(row, column);
+            recordChange(j -> j.set(table, row, column, value));
+        }
+    }
+
+    /**
+     * Действие над журналом изменений.
+     */
+    private interface JournalAction {
+        void write(ChangeJournal journal) throws IOException;
+    }
+
+    /**
+     * Дописывает изменение в журнал, если данные связаны с файлом. Вызывается в EDT.
+     * Когда журнал разрастается, файл данных переписывается целиком в фоновом потоке.
+     */
+    private void recordChange(JournalAction action) {
+        ChangeJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            action.write(current);
+            if (current.size() >= ChangeJournal.COMPACT_THRESHOLD && compactingJournal.compareAndSet(false, true)) {
+                SavePoint point = takeSavePoint();
+                File baseFile = current.getBaseFile();
+                CompletableFuture.runAsync(() -> {
+                    try {
+                        if (current.checkpoint(baseFile, point.journalPosition, file -> writeDataContent(file, baseFile, point, autosave.isPrettyPrint()))) {
+                            log.info("Журнал изменений сжат в файл данных: " + baseFile.getAbsolutePath());
+                        }
+                    } catch (IOException e) {
+                        log.error("Ошибка при сжатии журнала изменений: " + e.getMessage(), e);
+                    } finally {
+                        compactingJournal.set(false);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            log.error("Не удалось записать изменение в журнал: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Метод для отображения диалогового окна добавления учителя
      */
@@ -565,10 +1006,10 @@ public class Main {
 
                 validateFields(name, subject, classes);
 
-                // Добавление в таблицу и исходные данные
+                // Добавление в хранилище и таблицу
                 String[] newTeacher = {name, subject, classes};
                 teacherTableModel.addRow(newTeacher);
-                originalTeacherData.add(newTeacher);
+                recordChange(j -> j.add(ChangeJournal.TEACHERS, newTeacher));
 
                 JOptionPane.showMessageDialog(frame, "Учитель добавлен!", "Добавление", JOptionPane.INFORMATION_MESSAGE);
                 log.info("Добавлен учитель: " + name);
@@ -606,10 +1047,10 @@ public class Main {
 
                 validateFields(name, className, performance);
 
-                // Добавление в таблицу и исходные данные
+                // Добавление в хранилище и таблицу
                 String[] newStudent = {name, className, performance};
                 studentTableModel.addRow(newStudent);
-                originalStudentData.add(newStudent);
+                recordChange(j -> j.add(ChangeJournal.STUDENTS, newStudent));
 
                 JOptionPane.showMessageDialog(frame, "Ученик добавлен!", "Добавление", JOptionPane.INFORMATION_MESSAGE);
                 log.info("Добавлен ученик: " + name);
@@ -636,6 +1077,53 @@ public class Main {
         // Дополнительная валидация может быть добавлена здесь
     }
 
+    /**
+     * Формирует список имён удаляемых строк для диалога подтверждения.
+     * При большом выделении показываются только первые имена и число остальных.
+     *
+     * @param tableModel Модель таблицы.
+     * @param modelRows  Индексы строк модели.
+     * @return Имена, по одному в строке.
+     */
+    private String describeRows(RecordTableModel tableModel, int[] modelRows) {
+        final int maxNames = 20;
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < modelRows.length && i < maxNames; i++) {
+            names.append(tableModel.getValueAt(modelRows[i], 0)).append("\n");
+        }
+        if (modelRows.length > maxNames) {
+            names.append("… и ещё ").append(modelRows.length - maxNames).append("\n");
+        }
+        return names.toString();
+    }
+
+    /**
+     * Удаляет строки модели, перенося активный фильтр поиска на сдвинувшиеся строки,
+     * и снимает выделение. Отфильтрованная таблица после удаления показывает те же записи,
+     * что и до него, без удалённых, а следующее удаление выбирает строки заново.
+     *
+     * @param sortedRows Удаляемые строки модели по возрастанию, без повторов.
+     * @return Количество удалённых строк.
+     */
+    private int removeFilteredRows(RecordTableModel tableModel, TableRowSorter<RecordTableModel> sorter, JTable table,
+                                   int[] sortedRows) {
+        RowFilter<? super RecordTableModel, ? super Integer> filter = sorter.getRowFilter();
+        BitSetRowFilter indexFilter = filter instanceof BitSetRowFilter ? (BitSetRowFilter) filter : null;
+        if (indexFilter != null) {
+            indexFilter.rowsRemoving(sortedRows);
+        }
+        int removed;
+        try {
+            removed = tableModel.removeRows(sortedRows);
+        } finally {
+            if (indexFilter != null) {
+                indexFilter.removalApplied();
+            }
+        }
+        table.clearSelection();
+        return removed;
+    }
+
     /**
      * Метод для удаления выбранных учителей с подтверждением.
      */
@@ -647,13 +1135,12 @@ public class Main {
             return;
         }
 
-        // Получение имен выбранных учителей
-        StringBuilder names = new StringBuilder();
-        for (int row : selectedRows) {
-            int modelRow = teacherTable.convertRowIndexToModel(row);
-            String teacherName = (String) teacherTableModel.getValueAt(modelRow, 0);
-            names.append(teacherName).append("\n");
+        // Индексы строк модели (с учётом сортировки и фильтрации) и имена выбранных учителей
+        int[] modelRows = new int[selectedRows.length];
+        for (int i = 0; i < selectedRows.length; i++) {
+            modelRows[i] = teacherTable.convertRowIndexToModel(selectedRows[i]);
         }
+        String names = describeRows(teacherTableModel, modelRows);
 
         // Определяем тексты кнопок на русском
         String[] options = {"Да", "Нет"};
@@ -661,7 +1148,7 @@ public class Main {
         // Показываем диалог подтверждения с русскими кнопками
         int confirm = JOptionPane.showOptionDialog(
                 frame,
-                "Вы уверены, что хотите удалить следующих учителей?\n" + names.toString(),
+                "Вы уверены, что хотите удалить следующих учителей?\n" + names,
                 "Подтверждение удаления",
                 JOptionPane.YES_NO_OPTION,
                 JOptionPane.WARNING_MESSAGE,
@@ -671,16 +1158,11 @@ public class Main {
         );
 
         if (confirm == JOptionPane.YES_OPTION) {
-            // Сортировка выбранных строк по убыванию индексов
-            int[] sortedRows = selectedRows.clone();
-            java.util.Arrays.sort(sortedRows);
-            for (int i = sortedRows.length - 1; i >= 0; i--) {
-                int modelRow = teacherTable.convertRowIndexToModel(sortedRows[i]);
-                String removedTeacher = (String) teacherTableModel.getValueAt(modelRow, 0);
-                teacherTableModel.removeRow(modelRow);
-                originalTeacherData.remove(modelRow);
-                log.info("Удалён учитель: " + removedTeacher);
-            }
+            // Удаление всех выбранных строк за один проход с одним событием модели
+            int[] sortedRows = Arrays.stream(modelRows).sorted().distinct().toArray();
+            int removed = removeFilteredRows(teacherTableModel, teacherSorter, teacherTable, sortedRows);
+            recordChange(j -> j.delete(ChangeJournal.TEACHERS, sortedRows));
+            log.info("Удалено учителей: " + removed);
             JOptionPane.showMessageDialog(frame, "Учителя удалены.", "Удаление", JOptionPane.INFORMATION_MESSAGE);
         } else {
             log.info("Удаление учителей отменено пользователем");
@@ -698,13 +1180,12 @@ public class Main {
             return;
         }
 
-        // Получение имен выбранных учеников
-        StringBuilder names = new StringBuilder();
-        for (int row : selectedRows) {
-            int modelRow = studentTable.convertRowIndexToModel(row);
-            String studentName = (String) studentTableModel.getValueAt(modelRow, 0);
-            names.append(studentName).append("\n");
+        // Индексы строк модели (с учётом сортировки и фильтрации) и имена выбранных учеников
+        int[] modelRows = new int[selectedRows.length];
+        for (int i = 0; i < selectedRows.length; i++) {
+            modelRows[i] = studentTable.convertRowIndexToModel(selectedRows[i]);
         }
+        String names = describeRows(studentTableModel, modelRows);
 
         // Определяем тексты кнопок на русском
         String[] options = {"Да", "Нет"};
@@ -712,7 +1193,7 @@ public class Main {
         // Показываем диалог подтверждения с русскими кнопками
         int confirm = JOptionPane.showOptionDialog(
                 frame,
-                "Вы уверены, что хотите удалить следующих учеников?\n" + names.toString(),
+                "Вы уверены, что хотите удалить следующих учеников?\n" + names,
                 "Подтверждение удаления",
                 JOptionPane.YES_NO_OPTION,
                 JOptionPane.WARNING_MESSAGE,
@@ -722,16 +1203,11 @@ public class Main {
         );
 
         if (confirm == JOptionPane.YES_OPTION) {
-            // Сортировка выбранных строк по убыванию индексов
-            int[] sortedRows = selectedRows.clone();
-            java.util.Arrays.sort(sortedRows);
-            for (int i = sortedRows.length - 1; i >= 0; i--) {
-                int modelRow = studentTable.convertRowIndexToModel(sortedRows[i]);
-                String removedStudent = (String) studentTableModel.getValueAt(modelRow, 0);
-                studentTableModel.removeRow(modelRow);
-                originalStudentData.remove(modelRow);
-                log.info("Удалён ученик: " + removedStudent);
-            }
+            // Удаление всех выбранных строк за один проход с одним событием модели
+            int[] sortedRows = Arrays.stream(modelRows).sorted().distinct().toArray();
+            int removed = removeFilteredRows(studentTableModel, studentSorter, studentTable, sortedRows);
+            recordChange(j -> j.delete(ChangeJournal.STUDENTS, sortedRows));
+            log.info("Удалено учеников: " + removed);
             JOptionPane.showMessageDialog(frame, "Ученики удалены.", "Удаление", JOptionPane.INFORMATION_MESSAGE);
         } else {
             log.info("Удаление учеников отменено пользователем");
@@ -739,7 +1215,7 @@ public class Main {
     }
 
     /**
-     * Метод запуска всех потоков
+     * Метод запуска всех этапов конвейера
      */
     private void startThreads() {
         startLoad();
@@ -748,27 +1224,24 @@ public class Main {
     }
 
     /**
-     * Первый поток для загрузки данных из XML
+     * Первый этап: загрузка данных из XML
      */
-    private void startLoad() {
-        Thread thread1 = new Thread(new LoadDataThread(Main.this, loadLatch), "LoadDataThread");
-        thread1.start();
+    private CompletableFuture<Void> startLoad() {
+        return pipeline.submit(Stage.LOAD, this::loadDataFromFile);
     }
 
     /**
-     * Второй поток для редактирования и сохранения в XML
+     * Второй этап: сохранение в XML (после завершения последней загрузки)
      */
-    private void startEditAndSave() {
-        Thread thread2 = new Thread(new SaveDataThread(Main.this, loadLatch, saveLatch), "SaveDataThread");
-        thread2.start();
+    private CompletableFuture<Void> startEditAndSave() {
+        return pipeline.submit(Stage.SAVE, this::saveDataToFile);
     }
 
     /**
-     * Третий поток для формирования отчета в HTML/PDF
+     * Третий этап: формирование отчета в HTML/PDF (после завершения последнего сохранения)
      */
-    private void startReport() {
-        Thread thread3 = new Thread(new GenerateReportThread(Main.this, saveLatch), "GenerateReportThread");
-        thread3.start();
+    private CompletableFuture<Void> startReport() {
+        return pipeline.submit(Stage.REPORT, this::generateReport);
     }
 
     /**
@@ -777,9 +1250,10 @@ public class Main {
     public void generateReport() {
         log.info("Начало генерации отчёта");
 
+        JRSwapFileVirtualizer virtualizer = null;
         try {
-            // Запрос формата отчёта у пользователя (PDF или HTML)
-            String[] options = {"PDF", "HTML"};
+            // Запрос формата отчёта у пользователя (PDF или HTML, общий или по классам)
+            String[] options = {"PDF", "HTML", "PDF по классам", "HTML по классам", "Все форматы"};
             int choice = JOptionPane.showOptionDialog(
                     frame,
                     "Выберите формат отчёта для сохранения:",
@@ -796,18 +1270,11 @@ public class Main {
                 return; // Пользователь закрыл диалог без выбора
             }
 
-            String selectedFormat = options[choice];
-
-            // Создание XML-документа с данными для отчёта
-            String xmlDataPath = createDataXML();
-
-            if (xmlDataPath == null) {
-                JOptionPane.showMessageDialog(frame, "Не удалось создать XML-файл с данными для отчёта.", "Ошибка", JOptionPane.ERROR_MESSAGE);
-                log.error("Не удалось создать XML-файл для отчёта");
-                return;
-            }
+            boolean allFormats = choice == 4;
+            boolean byClass = choice == 2 || choice == 3;
+            String selectedFormat = allFormats ? null : options[choice % 2];
 
-            // Компиляция JasperReport шаблона
+            // Получение скомпилированного шаблона (компиляция только при изменении JRXML)
             String reportPath = "lab_10.jrxml"; // Убедитесь, что путь и имя файла верны
             File reportFile = new File(reportPath);
             if (!reportFile.exists()) {
@@ -815,18 +1282,47 @@ public class Main {
                 log.error("Файл шаблона отчёта не найден: " + reportPath);
                 return;
             }
-            JasperReport jasperReport = JasperCompileManager.compileReport(reportPath);
+            JasperReport jasperReport = reportTemplateCache.get(reportPath);
 
-            // Создание источника данных из XML
-            JRXmlDataSource xmlDataSource = new JRXmlDataSource(xmlDataPath, "/school/students/student");
+            // Источник данных, читающий учеников из снимка хранилища
+            RecordSnapshot students = takeSavePoint().students;
+            if (byClass) {
+                generateClassReports(jasperReport, students, selectedFormat);
+                return;
+            }
+            // Без правок с прошлого раза отчёт берётся из кэша готовых отчётов
+            long dataVersion = students.getVersion();
+            String templateHash = jasperReport.getProperty(ReportTemplateCache.SOURCE_HASH_PROPERTY);
+            JasperPrint jasperPrint = reportResultCache.getPrint(dataVersion, templateHash);
+            if (jasperPrint != null) {
+                log.info("Заполненный отчёт взят из кэша");
+            } else {
+                StudentDataSource dataSource = new StudentDataSource(students);
+
+                // Для больших отчётов страницы вытесняются в файл подкачки, в памяти остаётся ограниченный кэш
+                Map<String, Object> parameters = new HashMap<>();
+                virtualizer = ReportVirtualizers.createFor(students.size());
+                if (virtualizer != null) {
+                    parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+                    log.info("Отчёт по " + students.size() + " ученикам заполняется с вытеснением страниц на диск (кэш "
+                            + ReportVirtualizers.PAGE_CACHE_SIZE + " страниц)");
+                }
 
-            // Заполнение отчёта данными
-            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, new HashMap<>(), xmlDataSource);
+                // Заполнение отчёта данными
+                jasperPrint = ReportExporter.fillReport(jasperReport, parameters, dataSource);
+                if (virtualizer != null) {
+                    virtualizer.setReadOnly(true); // Страницы больше не меняются: экспорт и просмотр только читают их
+                } else {
+                    reportResultCache.putPrint(dataVersion, templateHash, jasperPrint);
+                }
+            }
 
             // Настройка JFileChooser для выбора места сохранения отчёта
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Сохранить отчёт");
-            if ("PDF".equalsIgnoreCase(selectedFormat)) {
+            if (allFormats) {
+                fileChooser.setDialogTitle("Сохранить отчёт в форматах " + String.join(", ", ReportExporter.FORMATS));
+            } else if ("PDF".equalsIgnoreCase(selectedFormat)) {
                 fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("PDF файлы", "pdf"));
             } else {
                 fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("HTML файлы", "html"));
@@ -839,84 +1335,117 @@ public class Main {
                 File saveFile = fileChooser.getSelectedFile();
                 String filePath = saveFile.getAbsolutePath();
 
-                // Добавляем расширение, если оно отсутствует
-                if (!filePath.toLowerCase().endsWith("." + selectedFormat.toLowerCase())) {
-                    filePath += "." + selectedFormat.toLowerCase();
-                }
-
-                if ("PDF".equalsIgnoreCase(selectedFormat)) {
-                    JasperExportManager.exportReportToPdfFile(jasperPrint, filePath);
-                } else if ("HTML".equalsIgnoreCase(selectedFormat)) {
-                    JasperExportManager.exportReportToHtmlFile(jasperPrint, filePath);
+                if (allFormats) {
+                    // Один заполненный отчёт экспортируется во все форматы одновременно
+                    int dot = saveFile.getName().lastIndexOf('.');
+                    if (dot > 0) {
+                        filePath = filePath.substring(0, filePath.length() - (saveFile.getName().length() - dot));
+                    }
+                    filePath = String.join(", ", writeReportFormats(jasperPrint, virtualizer != null, dataVersion, templateHash, filePath));
+                } else {
+                    // Добавляем расширение, если оно отсутствует
+                    if (!filePath.toLowerCase().endsWith("." + selectedFormat.toLowerCase())) {
+                        filePath += "." + selectedFormat.toLowerCase();
+                    }
+                    writeReport(jasperPrint, virtualizer != null, dataVersion, templateHash, selectedFormat, new File(filePath));
                 }
 
                 JOptionPane.showMessageDialog(frame, "Отчёт успешно сохранён: " + filePath, "Успех", JOptionPane.INFORMATION_MESSAGE);
                 log.info("Отчёт успешно создан: " + filePath);
 
-                // Отображение отчёта
-                JasperViewer.viewReport(jasperPrint, false);
+                // Отображение отчёта; файл подкачки удаляется при закрытии окна просмотра
+                JasperViewer viewer = new JasperViewer(jasperPrint, false);
+                if (virtualizer != null) {
+                    JRSwapFileVirtualizer viewed = virtualizer;
+                    viewer.addWindowListener(new WindowAdapter() {
+                        @Override
+                        public void windowClosed(WindowEvent e) {
+                            viewed.cleanup();
+                        }
+                    });
+                    virtualizer = null;
+                }
+                viewer.setVisible(true);
             } else {
                 log.info("Сохранение отчёта отменено пользователем");
             }
 
-        } catch (JRException e) {
+        } catch (JRException | IOException e) {
             log.error("Ошибка при генерации отчёта: " + e.getMessage(), e);
             JOptionPane.showMessageDialog(frame, "Ошибка при генерации отчёта: " + e.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+        } finally {
+            if (virtualizer != null) {
+                virtualizer.cleanup(); // Окно просмотра не открыто — файл подкачки больше не нужен
+            }
         }
     }
 
     /**
-     * Метод для создания XML-файла с данными для отчёта.
-     *
-     * @return Путь к созданному XML-файлу или null в случае ошибки.
+     * Показывает сводку успеваемости по классам. Сводка берётся из агрегатов, обновляемых
+     * при каждом изменении учеников, поэтому список учеников не просматривается.
      */
-    private String createDataXML() {
+    private void showClassSummary() {
+        List<ClassSummary> summaries = classStatistics.summaries();
+        ClassSummary total = classStatistics.total();
+        String[] columns = {"Класс", "Учеников", "С оценкой", "Средний балл", "Мин.", "Макс.", "Распределение оценок"};
+        Object[][] rows = new Object[summaries.size() + 1][];
+        for (int i = 0; i < summaries.size(); i++) {
+            rows[i] = summaryRow(summaries.get(i).getClassName(), summaries.get(i));
+        }
+        rows[summaries.size()] = summaryRow("Вся школа", total);
+
+        JTable table = new JTable(new javax.swing.table.DefaultTableModel(rows, columns) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        });
+        JButton reportButton = new JButton("Сводный отчёт");
+        JButton closeButton = new JButton("Закрыть");
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(reportButton);
+        buttons.add(closeButton);
+
+        JDialog dialog = new JDialog(frame, "Сводка по классам", false); // Немодальное: поверх открывается окно отчёта
+        dialog.setLayout(new BorderLayout());
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(buttons, BorderLayout.SOUTH);
+        reportButton.addActionListener(e -> generateClassSummaryReport(summaries, total));
+        closeButton.addActionListener(e -> dialog.dispose());
+        dialog.setSize(700, 450);
+        dialog.setLocationRelativeTo(frame);
+        log.info("Показана сводка по классам: классов " + summaries.size() + ", учеников " + total.getCount());
+        dialog.setVisible(true);
+    }
+
+    private static Object[] summaryRow(String title, ClassSummary summary) {
+        Double average = summary.getAverage();
+        return new Object[]{title, summary.getCount(), summary.getGraded(),
+                average != null ? String.format("%.2f", average) : "—",
+                summary.getMin() != null ? summary.getMin() : "—",
+                summary.getMax() != null ? summary.getMax() : "—",
+                summary.getDistribution()};
+    }
+
+    /**
+     * Заполняет сводный отчёт {@value ClassSummaryDataSource#TEMPLATE} по готовым сводкам классов и показывает его.
+     */
+    private void generateClassSummaryReport(List<ClassSummary> summaries, ClassSummary total) {
+        File reportFile = new File(ClassSummaryDataSource.TEMPLATE);
+        if (!reportFile.exists()) {
+            JOptionPane.showMessageDialog(frame, "Файл шаблона отчёта не найден: " + reportFile.getPath(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            log.error("Файл шаблона отчёта не найден: " + reportFile.getPath());
+            return;
+        }
         try {
-            // Создание фабрики и построителя документов
-            DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-
-            // Создание нового документа
-            Document doc = docBuilder.newDocument();
-
-            // Создание корневого элемента <school>
-            Element rootElement = doc.createElement("school");
-            doc.appendChild(rootElement);
-
-            // Создание элемента <students>
-            Element studentsElement = doc.createElement("students");
-            rootElement.appendChild(studentsElement);
-
-            // Добавление каждого ученика как элемента <student>
-            for (String[] student : originalStudentData) {
-                Element studentElement = doc.createElement("student");
-                studentElement.setAttribute("name", student[0]);
-                studentElement.setAttribute("class", student[1]);
-                studentElement.setAttribute("performance", student[2]);
-                studentsElement.appendChild(studentElement);
-            }
-
-            // Создание временного файла для данных отчёта
-            File tempFile = File.createTempFile("student_data_", ".xml");
-            tempFile.deleteOnExit(); // Удаление файла при завершении программы
-
-            // Запись документа в файл
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            // Для красивого форматирования XML
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(tempFile);
-            transformer.transform(source, result);
-
-            log.debug("XML-файл для отчёта успешно создан: " + tempFile.getAbsolutePath());
-
-            return tempFile.getAbsolutePath();
-
-        } catch (ParserConfigurationException | TransformerException | IOException e) {
-            log.error("Ошибка при создании XML-файла для отчёта: " + e.getMessage(), e);
-            return null;
+            JasperReport jasperReport = reportTemplateCache.get(reportFile.getPath());
+            JasperPrint print = ReportExporter.fillReport(jasperReport, ClassSummaryDataSource.parameters(total),
+                    new ClassSummaryDataSource(summaries));
+            log.info("Сводный отчёт по классам сформирован: классов " + summaries.size());
+            new JasperViewer(print, false).setVisible(true);
+        } catch (JRException e) {
+            log.error("Ошибка при формировании сводного отчёта: " + e.getMessage(), e);
+            JOptionPane.showMessageDialog(frame, "Ошибка при формировании сводного отчёта: " + e.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
     }
 
@@ -928,6 +1457,15 @@ public class Main {
     public static void main(String[] args) {
         // Настройка Log4j из файла конфигурации
         PropertyConfigurator.configure(Main.class.getClassLoader().getResource("log4j.properties"));
+        AsyncLogging.install();
+
+        // С аргументами программа работает в пакетном режиме, без окон
+        if (args.length > 0) {
+            System.exit(BatchCli.run(args, System.out, System.err));
+        }
+
+        // Метрики операций для JConsole
+        HotPathMetrics.registerMBeans();
 
         // Запуск интерфейса в потоке обработки событий Swing
         SwingUtilities.invokeLater(() -> {
@@ -935,6 +1473,167 @@ public class Main {
         });
     }
 
+    /**
+     * Записывает отчёт в файл. Небольшие отчёты берутся из кэша экспортированных отчётов или
+     * попадают в него, большие (с вытеснением страниц) экспортируются потоково прямо в файл.
+     *
+     * @param jasperPrint  Заполненный отчёт.
+     * @param virtualized  true, если страницы отчёта вытесняются на диск.
+     * @param dataVersion  Версия данных учеников.
+     * @param templateHash Хэш шаблона.
+     * @param format       Формат из {@link ReportExporter#FORMATS}.
+     * @param file         Файл отчёта.
+     */
+    private void writeReport(JasperPrint jasperPrint, boolean virtualized, long dataVersion, String templateHash,
+                             String format, File file) throws JRException, IOException {
+        if (virtualized) {
+            ReportExporter.toFile(jasperPrint, format, file);
+            return;
+        }
+        byte[] output = reportResultCache.getOutput(dataVersion, templateHash, format);
+        if (output == null) {
+            output = ReportExporter.toBytes(jasperPrint, format);
+            reportResultCache.putOutput(dataVersion, templateHash, format, output);
+        } else {
+            log.info("Экспортированный отчёт (" + format + ") взят из кэша");
+        }
+        java.nio.file.Files.write(file.toPath(), output);
+    }
+
+    /**
+     * Экспортирует один заполненный отчёт во все форматы параллельно, по потоку на формат.
+     *
+     * @param basePath Путь к файлам отчёта без расширения.
+     * @return Пути созданных файлов.
+     */
+    private List<String> writeReportFormats(JasperPrint jasperPrint, boolean virtualized, long dataVersion,
+                                            String templateHash, String basePath) throws JRException, IOException {
+        ExecutorService exporters = Executors.newFixedThreadPool(ReportExporter.FORMATS.size(), r -> {
+            Thread thread = new Thread(r, "ReportExportThread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long started = System.nanoTime();
+            List<Future<String>> futures = new ArrayList<>();
+            for (String format : ReportExporter.FORMATS) {
+                File file = new File(basePath + "." + format.toLowerCase());
+                futures.add(exporters.submit(() -> {
+                    writeReport(jasperPrint, virtualized, dataVersion, templateHash, format, file);
+                    return file.getAbsolutePath();
+                }));
+            }
+            List<String> paths = new ArrayList<>();
+            for (Future<String> future : futures) {
+                paths.add(future.get());
+            }
+            log.info("Отчёт экспортирован в " + paths.size() + " форматов за " + (System.nanoTime() - started) / 1_000_000 + " мс");
+            return paths;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Экспорт отчёта прерван");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JRException) {
+                throw (JRException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new JRException("Ошибка при экспорте отчёта: " + cause.getMessage(), cause);
+        } finally {
+            exporters.shutdownNow();
+        }
+    }
+
+    /**
+     * Формирует отдельный отчёт для каждого класса параллельно на всех ядрах
+     * и сохраняет их в выбранный каталог или ZIP-архив.
+     *
+     * @param jasperReport Скомпилированный шаблон.
+     * @param students     Снимок учеников.
+     * @param format       "PDF" или "HTML".
+     */
+    private void generateClassReports(JasperReport jasperReport, RecordSnapshot students, String format)
+            throws JRException, IOException {
+        int zipChoice = JOptionPane.showConfirmDialog(frame, "Упаковать отчёты по классам в один ZIP-архив?",
+                "Отчёты по классам", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (zipChoice == JOptionPane.CANCEL_OPTION || zipChoice == JOptionPane.CLOSED_OPTION) {
+            log.info("Генерация отчётов по классам отменена пользователем");
+            return;
+        }
+        boolean zip = zipChoice == JOptionPane.YES_OPTION;
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setCurrentDirectory(new File(System.getProperty("user.home")));
+        if (zip) {
+            fileChooser.setDialogTitle("Сохранить архив отчётов");
+            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("ZIP-архивы", "zip"));
+        } else {
+            fileChooser.setDialogTitle("Выберите каталог для отчётов");
+            fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        }
+        if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            log.info("Сохранение отчётов по классам отменено пользователем");
+            return;
+        }
+        File target = fileChooser.getSelectedFile();
+        if (zip && !target.getName().toLowerCase().endsWith(".zip")) {
+            target = new File(target.getPath() + ".zip");
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ReportShardGenerator generator = new ReportShardGenerator(jasperReport, threads);
+        long started = System.nanoTime();
+        int count;
+        if (zip) {
+            count = generator.exportZip(students, format, target);
+        } else {
+            if (!target.isDirectory() && !target.mkdirs()) {
+                throw new IOException("Не удалось создать каталог " + target);
+            }
+            count = generator.export(students, format, target).size();
+        }
+        long elapsed = (System.nanoTime() - started) / 1_000_000;
+
+        String path = target.getAbsolutePath();
+        log.info("Сформировано отчётов по классам: " + count + " (" + threads + " потоков, " + elapsed + " мс): " + path);
+        JOptionPane.showMessageDialog(frame, "Сформировано отчётов по классам: " + count + "\n" + path,
+                "Успех", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Запускает встроенный HTTP-сервис, если задано свойство {@value SchoolHttpServer#PORT_PROPERTY}.
+     * Изменения через HTTP выполняются в EDT и записываются в журнал так же, как изменения из окна.
+     */
+    private void startHttpServer() {
+        Integer port = Integer.getInteger(SchoolHttpServer.PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
+        SchoolHttpServer.MutationListener journalWriter = new SchoolHttpServer.MutationListener() {
+            @Override
+            public void added(int table, String[] values) {
+                recordChange(j -> j.add(table, values));
+            }
+
+            @Override
+            public void deleted(int table, int[] rows) {
+                recordChange(j -> j.delete(table, rows));
+            }
+        };
+        httpServer = new SchoolHttpServer(teacherTableModel, studentTableModel, SwingUtilities::invokeLater,
+                journalWriter, reportTemplateCache, reportResultCache, "lab_10.jrxml");
+        // Сервер подключается к данным через EDT, поэтому запускается после открытия окна
+        CompletableFuture.runAsync(() -> {
+            try {
+                httpServer.start(port);
+            } catch (IOException e) {
+                log.error("Не удалось запустить HTTP-сервис на порту " + port + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
     // Внутренние классы исключений
 
     /**
@@ -965,88 +1664,404 @@ public class Main {
     }
 
     /**
-     * Класс для загрузки данных из XML-файла.
+     * Поиск при вводе. Изменения поля поиска откладываются до паузы в наборе,
+     * после чего запрос выполняется в фоновом потоке; более старый запрос при этом отменяется.
+     * Если новый запрос продолжает предыдущий, уточняется уже найденное множество строк,
+     * а не выполняется поиск заново.
+     * Фоновое чтение не блокирует данные: если модель изменилась во время поиска,
+     * результат отбрасывается и поиск повторяется.
      */
-    class LoadDataThread implements Runnable {
-        private Main mainApp;
-        private CountDownLatch latch;
+    class LiveSearchController {
+        /** Пауза в наборе, после которой выполняется поиск, мс. */
+        private static final int DEBOUNCE_DELAY = 250;
+
+        private final Timer debounceTimer;
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "LiveSearchThread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final AtomicLong generation = new AtomicLong();
+        private Future<?> pending;
+
+        // Последний применённый результат (используется только в EDT)
+        private RecordTableModel lastModel;
+        private int lastColumn = -1;
+        private long lastModCount;
+        private String lastQuery;
+        private boolean lastPrefix;
+        private BitSet lastRows;
+
+        public LiveSearchController() {
+            debounceTimer = new Timer(DEBOUNCE_DELAY, e -> run());
+            debounceTimer.setRepeats(false);
+        }
+
+        /**
+         * Откладывает поиск до паузы в наборе. Вызывается в EDT.
+         */
+        public void schedule() {
+            if (liveSearchBox.isSelected()) {
+                debounceTimer.restart();
+            }
+        }
 
-        public LoadDataThread(Main mainApp, CountDownLatch latch) {
-            this.mainApp = mainApp;
-            this.latch = latch;
+        /**
+         * Отменяет отложенный и выполняющийся поиск. Вызывается в EDT.
+         */
+        public void cancel() {
+            cancelPending();
+            lastRows = null;
         }
 
-        @Override
-        public void run() {
-            log.info(Thread.currentThread().getName() + ": Начало загрузки данных.");
-            mainApp.loadDataFromFile();
-            log.info(Thread.currentThread().getName() + ": Завершена загрузка данных.");
-            latch.countDown(); // Уведомляем следующий поток о завершении загрузки
+        /**
+         * Отменяет отложенный и выполняющийся поиск, сохраняя последний результат для уточнения.
+         */
+        private void cancelPending() {
+            debounceTimer.stop();
+            generation.incrementAndGet();
+            if (pending != null) {
+                pending.cancel(true);
+                pending = null;
+            }
+        }
+
+        /**
+         * Запускает фоновый поиск по текущему содержимому поля. Вызывается в EDT.
+         */
+        private void run() {
+            int tabIndex = tabbedPane.getSelectedIndex();
+            int column = getSearchColumnIndex(tabIndex, (String) searchCriteria.getSelectedItem());
+            if (column == -1) {
+                return;
+            }
+            RecordTableModel model = tabIndex == 0 ? teacherTableModel : studentTableModel;
+            TableRowSorter<RecordTableModel> sorter = tabIndex == 0 ? teacherSorter : studentSorter;
+            String value = searchField.getText().trim();
+
+            cancelPending();
+            if (value.isEmpty()) {
+                sorter.setRowFilter(null);
+                lastRows = null;
+                return;
+            }
+            boolean prefix = value.startsWith("^") && value.length() > 1;
+            String query = prefix ? value.substring(1) : value;
+            long modCount = model.getModCount();
+
+            // Предыдущий результат можно уточнить, если запрос его продолжает и данные не менялись
+            BitSet base = null;
+            if (lastRows != null && lastModel == model && lastColumn == column && lastPrefix == prefix
+                    && lastModCount == modCount && query.length() > lastQuery.length()
+                    && (prefix ? startsWithIgnoreCase(query, lastQuery) : containsIgnoreCase(query, lastQuery))) {
+                base = lastRows;
+            }
+            BitSet previous = base;
+            long id = generation.get();
+            pending = executor.submit(() -> {
+                BitSet rows;
+                try {
+                    long start = System.nanoTime();
+                    rows = previous != null
+                            ? model.refine(previous, column, query, prefix)
+                            : model.find(column, query, prefix);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Поиск при вводе \"" + value + "\": " + rows.cardinality() + " строк за "
+                                + (System.nanoTime() - start) / 1000 + " мкс" + (previous != null ? " (уточнение)" : ""));
+                    }
+                } catch (CancellationException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // Данные изменились во время чтения — повторяем поиск в EDT
+                    if (model.getModCount() == modCount) {
+                        log.error("Ошибка поиска при вводе: " + e.getMessage(), e);
+                        return;
+                    }
+                    rows = null;
+                }
+                BitSet result = rows;
+                SwingUtilities.invokeLater(() -> apply(id, model, sorter, column, query, prefix, modCount, result));
+            });
+        }
+
+        /**
+         * Применяет результат, если он всё ещё актуален. Вызывается в EDT.
+         */
+        private void apply(long id, RecordTableModel model, TableRowSorter<RecordTableModel> sorter,
+                           int column, String query, boolean prefix, long modCount, BitSet rows) {
+            if (id != generation.get()) {
+                return; // Уже запущен более новый запрос
+            }
+            if (rows == null || model.getModCount() != modCount) {
+                debounceTimer.restart(); // Данные изменились во время поиска
+                return;
+            }
+            pending = null;
+            sorter.setRowFilter(new BitSetRowFilter(model, column, query, prefix, rows, modCount));
+            lastModel = model;
+            lastColumn = column;
+            lastQuery = query;
+            lastPrefix = prefix;
+            lastModCount = modCount;
+            lastRows = rows;
+        }
+
+        private boolean startsWithIgnoreCase(String value, String prefix) {
+            return value.regionMatches(true, 0, prefix, 0, prefix.length());
+        }
+
+        private boolean containsIgnoreCase(String value, String part) {
+            return TrigramIndex.matches(value, part, false);
         }
     }
 
     /**
-     * Класс для сохранения данных в XML-файл.
+     * Фоновое автосохранение в текущий файл данных.
+     * Серия правок объединяется в одну запись: сохранение выполняется после паузы в изменениях,
+     * но не позже {@value #MAX_DELAY} мс после первой несохранённой правки. Файл записывается
+     * в отдельном потоке через временный файл и замену, поэтому EDT не ждёт диска.
+     * XML записывается в том же виде (с отступами или без), что и при последнем сохранении пользователем.
+     * <p>
+     * После ошибки записи следующая попытка откладывается, и пауза удваивается с каждой неудачей;
+     * после {@value #MAX_FAILURES} неудач подряд автосохранение останавливается до успешного сохранения
+     * пользователем или загрузки файла. О первой ошибке и об остановке сообщается в окне.
+     * Все методы, кроме потока записи, вызываются в EDT.
      */
-    class SaveDataThread implements Runnable {
-        private Main mainApp;
-        private CountDownLatch loadLatch;
-        private CountDownLatch saveLatch;
+    class AutosaveService {
+        /** Пауза в изменениях, после которой данные сохраняются, мс. */
+        private static final int QUIET_PERIOD = 2000;
+        /** Наибольшая задержка сохранения при непрерывных правках, мс. */
+        private static final int MAX_DELAY = 30_000;
+        /** Число неудачных записей подряд, после которого автосохранение останавливается. */
+        private static final int MAX_FAILURES = 5;
+
+        private final Timer quietTimer;
+        private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "AutosaveThread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private long savedVersion;  // Версия данных, совпадающая с файлом
+        private long firstDirtyAt;  // Время первой несохранённой правки или 0
+        private boolean writing;
+        private boolean pending;    // Во время записи появились новые правки
+        private int failures;       // Неудачные записи подряд
+        private long retryAt;       // Время, раньше которого после ошибки запись не повторяется
+        private volatile boolean prettyPrint = true; // Формат XML последнего сохранения пользователем
+
+        public AutosaveService() {
+            quietTimer = new Timer(QUIET_PERIOD, e -> saveNow());
+            quietTimer.setRepeats(false);
+        }
 
-        public SaveDataThread(Main mainApp, CountDownLatch loadLatch, CountDownLatch saveLatch) {
-            this.mainApp = mainApp;
-            this.loadLatch = loadLatch;
-            this.saveLatch = saveLatch;
+        /**
+         * Суммарная версия хранилищ учителей и учеников.
+         */
+        private long currentVersion() {
+            return teacherStore.getVersion() + studentStore.getVersion();
         }
 
-        @Override
-        public void run() {
-            try {
-                log.info(Thread.currentThread().getName() + ": Ожидание завершения загрузки данных.");
-                loadLatch.await(); // Ждем завершения загрузки данных
-                log.info(Thread.currentThread().getName() + ": Начало сохранения данных.");
+        public boolean isDirty() {
+            return currentVersion() != savedVersion;
+        }
 
-                mainApp.saveDataToFile();
+        /**
+         * @return true, если XML записывается с отступами.
+         */
+        public boolean isPrettyPrint() {
+            return prettyPrint;
+        }
 
-                log.info(Thread.currentThread().getName() + ": Завершено сохранение данных.");
-                saveLatch.countDown(); // Уведомляем следующий поток о завершении сохранения
-            } catch (InterruptedException e) {
+        /**
+         * Запоминает формат XML, выбранный пользователем при сохранении.
+         */
+        public void setPrettyPrint(boolean prettyPrint) {
+            this.prettyPrint = prettyPrint;
+        }
+
+        /**
+         * Сообщает об изменении данных и откладывает сохранение до паузы в правках.
+         */
+        public void changed() {
+            if (!isDirty() || failures >= MAX_FAILURES) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (firstDirtyAt == 0) {
+                firstDirtyAt = now;
+            }
+            if (now < retryAt) {
+                // После ошибки запись не повторяется раньше назначенного времени
+                quietTimer.setInitialDelay((int) Math.max(QUIET_PERIOD, retryAt - now));
+                quietTimer.restart();
+            } else if (now - firstDirtyAt >= MAX_DELAY) {
+                saveNow();
+            } else {
+                quietTimer.setInitialDelay(QUIET_PERIOD);
+                quietTimer.restart();
+            }
+        }
+
+        /**
+         * Отмечает, что данные совпадают с файлом (после загрузки).
+         */
+        public void markClean() {
+            savedVersion = currentVersion();
+            firstDirtyAt = 0;
+            resetFailures();
+            quietTimer.stop();
+        }
+
+        /**
+         * Отмечает, что в файл записано состояние с указанной версией.
+         */
+        public void markSaved(long version) {
+            savedVersion = Math.max(savedVersion, version);
+            resetFailures();
+            if (!isDirty()) {
+                firstDirtyAt = 0;
+                quietTimer.stop();
+            }
+        }
+
+        /**
+         * Сохраняет данные, если они изменились и связаны с файлом.
+         */
+        public void saveNow() {
+            quietTimer.stop();
+            ChangeJournal current = journal;
+            if (current == null || !isDirty() || failures >= MAX_FAILURES) {
+                return;
+            }
+            if (writing) {
+                pending = true;
+                return;
+            }
+            SavePoint point = takeSavePoint();
+            long version = point.teachers.getVersion() + point.students.getVersion();
+            File baseFile = current.getBaseFile();
+            boolean pretty = prettyPrint;
+            boolean firstAttempt = failures == 0;
+            writing = true;
+            firstDirtyAt = 0;
+            writer.execute(() -> {
+                IOException error = null;
+                try {
+                    long started = System.nanoTime();
+                    current.checkpoint(baseFile, point.journalPosition, file -> writeDataContent(file, baseFile, point, pretty));
+                    log.info("Автосохранение в " + baseFile.getAbsolutePath() + " за "
+                            + (System.nanoTime() - started) / 1_000_000 + " мс");
+                } catch (IOException e) {
+                    error = e;
+                    // Полный стек записывается только для первой ошибки серии
+                    if (firstAttempt) {
+                        log.error("Ошибка автосохранения: " + e.getMessage(), e);
+                    } else {
+                        log.warn("Повторная ошибка автосохранения: " + e.getMessage());
+                    }
+                }
+                IOException failure = error;
                 SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(frame, "Поток сохранения данных был прерван.", "Ошибка", JOptionPane.ERROR_MESSAGE);
+                    writing = false;
+                    if (failure == null) {
+                        markSaved(version);
+                    } else {
+                        failed(baseFile, failure);
+                    }
+                    if (pending || isDirty()) {
+                        pending = false;
+                        changed(); // Правки во время записи сохраняются следующей записью
+                    }
                 });
-                log.error("Поток сохранения данных был прерван.", e);
+            });
+        }
+
+        public void shutdown() {
+            quietTimer.stop();
+            writer.shutdown();
+        }
+
+        /**
+         * Откладывает следующую попытку записи после ошибки и сообщает о ней пользователю.
+         */
+        private void failed(File baseFile, IOException error) {
+            failures++;
+            long delay = Math.min(MAX_DELAY, (long) QUIET_PERIOD << failures);
+            retryAt = System.currentTimeMillis() + delay;
+            if (failures >= MAX_FAILURES) {
+                log.error("Автосохранение остановлено после " + failures + " ошибок подряд");
+                JOptionPane.showMessageDialog(frame, "Автосохранение в " + baseFile.getAbsolutePath()
+                                + " остановлено после " + failures + " ошибок подряд:\n" + error.getMessage()
+                                + "\nИзменения сохраняются в журнале; сохраните данные вручную.",
+                        "Автосохранение", JOptionPane.WARNING_MESSAGE);
+            } else if (failures == 1) {
+                JOptionPane.showMessageDialog(frame, "Не удалось автоматически сохранить данные в "
+                                + baseFile.getAbsolutePath() + ":\n" + error.getMessage()
+                                + "\nПопытка будет повторена.",
+                        "Автосохранение", JOptionPane.WARNING_MESSAGE);
             }
         }
+
+        private void resetFailures() {
+            if (failures > 0) {
+                log.info("Автосохранение возобновлено");
+            }
+            failures = 0;
+            retryAt = 0;
+        }
     }
 
     /**
-     * Класс для генерации отчёта.
+     * Приёмник записей, который накапливает прочитанные строки вне EDT
+     * и передаёт их в таблицы крупными пачками.
      */
-    class GenerateReportThread implements Runnable {
-        private Main mainApp;
-        private CountDownLatch latch;
+    class RowBatchPublisher implements XmlStreamLoader.RecordSink {
+        /** Размер пачки строк, передаваемой в EDT за одно событие. */
+        private static final int BATCH_SIZE = 10_000;
+
+        private List<String[]> teacherBatch = new ArrayList<>(BATCH_SIZE);
+        private List<String[]> studentBatch = new ArrayList<>(BATCH_SIZE);
 
-        public GenerateReportThread(Main mainApp, CountDownLatch latch) {
-            this.mainApp = mainApp;
-            this.latch = latch;
+        @Override
+        public void teacher(String[] teacher) {
+            teacherBatch.add(teacher);
+            if (teacherBatch.size() >= BATCH_SIZE) {
+                flush();
+            }
         }
 
         @Override
-        public void run() {
-            try {
-                log.info(Thread.currentThread().getName() + ": Ожидание завершения сохранения данных.");
-                latch.await(); // Ждем завершения сохранения данных
-                log.info(Thread.currentThread().getName() + ": Начало генерации отчёта.");
+        public void student(String[] student) {
+            studentBatch.add(student);
+            if (studentBatch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
 
-                mainApp.generateReport();
+        /**
+         * Отбрасывает накопленные, но ещё не переданные строки.
+         */
+        public void discard() {
+            teacherBatch = new ArrayList<>(BATCH_SIZE);
+            studentBatch = new ArrayList<>(BATCH_SIZE);
+        }
 
-                log.info(Thread.currentThread().getName() + ": Завершена генерация отчёта.");
-            } catch (InterruptedException e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(frame, "Поток генерации отчёта был прерван.", "Ошибка", JOptionPane.ERROR_MESSAGE);
-                });
-                log.error("Поток генерации отчёта был прерван.", e);
+        /**
+         * Передаёт накопленные строки в EDT одной задачей.
+         */
+        public void flush() {
+            if (teacherBatch.isEmpty() && studentBatch.isEmpty()) {
+                return;
             }
+            List<String[]> teachers = teacherBatch;
+            List<String[]> students = studentBatch;
+            teacherBatch = new ArrayList<>(BATCH_SIZE);
+            studentBatch = new ArrayList<>(BATCH_SIZE);
+            SwingUtilities.invokeLater(() -> {
+                teacherTableModel.appendRows(teachers);
+                studentTableModel.appendRows(students);
+            });
         }
     }
+
 }
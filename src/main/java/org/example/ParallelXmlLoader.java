@@ -0,0 +1,383 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Параллельный загрузчик больших XML-файлов школы.
+ * Файл разбивается на части по началам элементов teacher и student, каждая часть
+ * отображается в память и разбирается отдельной задачей в пуле fork-join.
+ * Результаты частей передаются приёмнику строго в порядке документа; одновременно
+ * в работе находится не больше {@link #IN_FLIGHT_PER_THREAD} частей на поток пула,
+ * поэтому память под неслитые результаты ограничена независимо от размера файла.
+ * <p>
+ * Части разбираются простым сканером атрибутов, поэтому поддерживаются файлы в UTF-8
+ * без DOCTYPE, комментариев и CDATA; для остальных выбрасывается
+ * {@link UnsupportedLayoutException}, и файл загружается последовательно.
+ */
+class ParallelXmlLoader extends XmlStreamLoader {
+    private static final Logger log = Logger.getLogger(ParallelXmlLoader.class);
+
+    /** Минимальный размер файла, начиная с которого используется параллельный разбор. */
+    static final long PARALLEL_THRESHOLD = 32L << 20;
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 64 << 20;
+    private static final int PROLOG_SIZE = 4096;
+
+    /** Число одновременно разбираемых частей на один поток пула. */
+    static final int IN_FLIGHT_PER_THREAD = 2;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Результат разбора одной части файла.
+     */
+    private class ChunkResult {
+        final List<String[]> teachers = new ArrayList<>();
+        final List<String[]> students = new ArrayList<>();
+    }
+
+    @Override
+    public void load(File xmlFile, RecordSink sink, ProgressListener listener)
+            throws IOException, XMLStreamException, LoadCancelledException {
+        try (FileChannel channel = FileChannel.open(xmlFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            checkProlog(channel);
+
+            // Разбиение на части по началам элементов
+            long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                    Math.max(MIN_CHUNK_SIZE, fileSize / (pool.getParallelism() * 4L)));
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            for (long target = chunkSize; target < fileSize; target = bounds.get(bounds.size() - 1) + chunkSize) {
+                long start = findElementStart(channel, target, fileSize);
+                if (start >= fileSize) {
+                    break;
+                }
+                bounds.add(start);
+            }
+            bounds.add(fileSize);
+            log.debug("Параллельная загрузка: " + (bounds.size() - 1) + " частей, потоков " + pool.getParallelism());
+
+            int chunks = bounds.size() - 1;
+            int window = Math.max(2, pool.getParallelism() * IN_FLIGHT_PER_THREAD);
+            ArrayDeque<ForkJoinTask<ChunkResult>> tasks = new ArrayDeque<>(window);
+            int submitted = 0;
+
+            // Слияние в порядке документа; следующая часть отправляется по мере слияния
+            int teachers = 0;
+            int students = 0;
+            try (HotPathMetrics.Sample sample = HotPathMetrics.LOAD.start()) {
+                for (int i = 0; i < chunks; i++) {
+                    while (submitted < chunks && tasks.size() < window) {
+                        long from = bounds.get(submitted);
+                        long to = bounds.get(submitted + 1);
+                        tasks.addLast(pool.submit(() -> parseChunk(channel, from, to)));
+                        submitted++;
+                    }
+                    if (isCancelled()) {
+                        throw cancelled(teachers + students);
+                    }
+                    ChunkResult result = join(tasks.pollFirst(), teachers + students);
+                    // Отмена могла прийти во время разбора части: её результат не публикуется
+                    if (isCancelled()) {
+                        throw cancelled(teachers + students);
+                    }
+                    for (String[] teacher : result.teachers) {
+                        sink.teacher(teacher);
+                    }
+                    for (String[] student : result.students) {
+                        sink.student(student);
+                    }
+                    teachers += result.teachers.size();
+                    students += result.students.size();
+                    if (listener != null) {
+                        listener.onProgress(bounds.get(i + 1), fileSize, teachers, students);
+                    }
+                }
+                sample.succeeded(teachers + students);
+            } finally {
+                for (ForkJoinTask<ChunkResult> task : tasks) {
+                    task.cancel(true);
+                }
+            }
+            log.debug("Параллельная загрузка завершена: учителей " + teachers + ", учеников " + students);
+        }
+    }
+
+    private LoadCancelledException cancelled(int records) {
+        return new LoadCancelledException("Загрузка прервана после " + records + " записей.");
+    }
+
+    /**
+     * Ждёт результата части.
+     *
+     * @param records Число уже переданных приёмнику записей (для сообщения об отмене).
+     * @throws LoadCancelledException если разбор части был прерван отменой.
+     */
+    private ChunkResult join(ForkJoinTask<ChunkResult> task, int records) throws IOException, LoadCancelledException {
+        try {
+            return task.join();
+        } catch (CancellationException e) {
+            throw cancelled(records);
+        } catch (RuntimeException e) {
+            // Исключение задачи может быть обёрнуто несколько раз
+            Throwable cause = e;
+            while (!(cause instanceof IOException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Ошибка разбора: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Проверяет начало файла: кодировка должна быть UTF-8, DOCTYPE не допускается.
+     */
+    private void checkProlog(FileChannel channel) throws IOException {
+        ByteBuffer prolog = ByteBuffer.allocate((int) Math.min(PROLOG_SIZE, channel.size()));
+        channel.read(prolog, 0);
+        String text = new String(prolog.array(), 0, prolog.position(), StandardCharsets.UTF_8);
+        int declarationEnd = text.startsWith("<?xml") || text.startsWith("\uFEFF<?xml") ? text.indexOf("?>") : -1;
+        if (declarationEnd > 0) {
+            String declaration = text.substring(0, declarationEnd).toLowerCase();
+            int encoding = declaration.indexOf("encoding");
+            if (encoding >= 0 && !declaration.substring(encoding).matches("(?s)encoding\\s*=\\s*[\"']utf-8[\"'].*")) {
+                throw new UnsupportedLayoutException("кодировка отлична от UTF-8");
+            }
+        }
+        if (text.contains("<!DOCTYPE")) {
+            throw new UnsupportedLayoutException("файл содержит DOCTYPE");
+        }
+    }
+
+    /**
+     * Ищет начало ближайшего элемента teacher или student не раньше позиции from.
+     *
+     * @return Позиция символа '&lt;' или размер файла, если элементов дальше нет.
+     */
+    private long findElementStart(FileChannel channel, long from, long fileSize) throws IOException {
+        final int window = 1 << 16;
+        ByteBuffer buffer = ByteBuffer.allocate(window + 16);
+        for (long position = from; position < fileSize; position += window) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int limit = Math.min(read, window);
+            for (int i = 0; i < limit; i++) {
+                if (buffer.get(i) == '<' && recordTag(buffer, i + 1, read) != null) {
+                    return position + i;
+                }
+            }
+        }
+        return fileSize;
+    }
+
+    /**
+     * Разбирает часть файла [from, to), отображённую в память.
+     * Отображение сканируется напрямую, в куче копируются только значения атрибутов.
+     *
+     * @throws CancellationException если загрузка отменена во время разбора; неполный результат не возвращается.
+     */
+    private ChunkResult parseChunk(FileChannel channel, long from, long to) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+
+        ChunkResult result = new ChunkResult();
+        int length = bytes.limit();
+        for (int i = 0; i < length; i++) {
+            if (bytes.get(i) != '<') {
+                continue;
+            }
+            if (i + 1 < length && bytes.get(i + 1) == '!') {
+                throw new UnsupportedLayoutException("файл содержит комментарии, CDATA или DOCTYPE");
+            }
+            String tag = recordTag(bytes, i + 1, length);
+            if (tag == null) {
+                continue;
+            }
+            boolean teacher = "teacher".equals(tag);
+            String[] names = teacher ? XmlStreamSaver.TEACHER_ATTRIBUTES : XmlStreamSaver.STUDENT_ATTRIBUTES;
+            String[] values = {"", "", ""};
+            i = parseAttributes(bytes, i + 1 + tag.length(), length, names, values);
+            if (teacher) {
+                result.teachers.add(values);
+            } else {
+                result.students.add(values);
+            }
+            if (Thread.currentThread().isInterrupted() || isCancelled()) {
+                throw new CancellationException("Разбор части файла прерван");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает "teacher" или "student", если с позиции start начинается такое имя элемента.
+     */
+    private String recordTag(ByteBuffer bytes, int start, int length) {
+        String tag;
+        if (startsWith(bytes, start, length, "teacher")) {
+            tag = "teacher";
+        } else if (startsWith(bytes, start, length, "student")) {
+            tag = "student";
+        } else {
+            return null;
+        }
+        int next = start + tag.length();
+        if (next >= length) {
+            return null;
+        }
+        byte b = bytes.get(next);
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/' || b == '>' ? tag : null;
+    }
+
+    private boolean startsWith(ByteBuffer bytes, int start, int length, String ascii) {
+        if (start + ascii.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (bytes.get(start + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Читает атрибуты открывающего тега до символа '&gt;'.
+     *
+     * @return Позиция символа '&gt;'.
+     */
+    private int parseAttributes(ByteBuffer bytes, int i, int length, String[] names, String[] values) throws IOException {
+        while (i < length) {
+            byte b = bytes.get(i);
+            if (b == '>') {
+                return i;
+            }
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '/') {
+                i++;
+                continue;
+            }
+            // Имя атрибута
+            int nameStart = i;
+            while (i < length && bytes.get(i) != '=' && bytes.get(i) != ' ' && bytes.get(i) != '\t'
+                    && bytes.get(i) != '\n' && bytes.get(i) != '\r' && bytes.get(i) != '>') {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < length && bytes.get(i) != '=') {
+                i++;
+            }
+            i++;
+            while (i < length && bytes.get(i) != '"' && bytes.get(i) != '\'') {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            byte quote = bytes.get(i++);
+            int valueStart = i;
+            while (i < length && bytes.get(i) != quote) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            for (int a = 0; a < names.length; a++) {
+                if (nameEnd - nameStart == names[a].length() && startsWith(bytes, nameStart, nameEnd, names[a])) {
+                    values[a] = decodeValue(bytes, valueStart, i);
+                }
+            }
+            i++;
+        }
+        throw new IOException("Незавершённый элемент в части файла");
+    }
+
+    /**
+     * Декодирует значение атрибута: UTF-8, ссылки на сущности и нормализация пробельных символов.
+     */
+    private String decodeValue(ByteBuffer bytes, int from, int to) throws IOException {
+        byte[] slice = new byte[to - from];
+        bytes.get(from, slice);
+        boolean plain = true;
+        for (int i = 0; i < slice.length && plain; i++) {
+            byte b = slice[i];
+            plain = b != '&' && b != '\t' && b != '\n' && b != '\r';
+        }
+        String raw = new String(slice, StandardCharsets.UTF_8);
+        if (plain) {
+            return raw;
+        }
+        StringBuilder value = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char ch = raw.charAt(i);
+            if (ch == '\r') {
+                value.append(' ');
+                if (i + 1 < raw.length() && raw.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (ch == '\t' || ch == '\n') {
+                value.append(' ');
+            } else if (ch == '&') {
+                int end = raw.indexOf(';', i);
+                if (end < 0) {
+                    throw new IOException("Некорректная ссылка на сущность: " + raw);
+                }
+                String entity = raw.substring(i + 1, end);
+                switch (entity) {
+                    case "amp":
+                        value.append('&');
+                        break;
+                    case "lt":
+                        value.append('<');
+                        break;
+                    case "gt":
+                        value.append('>');
+                        break;
+                    case "quot":
+                        value.append('"');
+                        break;
+                    case "apos":
+                        value.append('\'');
+                        break;
+                    default:
+                        if (!entity.startsWith("#")) {
+                            throw new UnsupportedLayoutException("файл содержит сущность &" + entity + ";");
+                        }
+                        try {
+                            int code = entity.startsWith("#x")
+                                    ? Integer.parseInt(entity.substring(2), 16)
+                                    : Integer.parseInt(entity.substring(1));
+                            value.appendCodePoint(code);
+                        } catch (IllegalArgumentException e) {
+                            throw new IOException("Некорректная ссылка на символ: &" + entity + ";");
+                        }
+                }
+                i = end;
+            } else {
+                value.append(ch);
+            }
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package org.example;
+
+/**
+ * Наблюдатель изменений записей модели таблицы. Вызывается в потоке, изменяющем модель,
+ * до события модели. Об удалении сообщается до уплотнения хранилища, пока значения строк ещё доступны.
+ */
+interface RecordObserver {
+    /** Добавлены строки [from, to). */
+    void rowsAppended(RecordSource store, int from, int to);
+
+    /** Строки будут удалены (индексы по возрастанию, без повторов). */
+    void rowsRemoving(RecordSource store, int[] sortedRows);
+
+    /** Значение ячейки изменено; хранилище уже содержит новое значение. */
+    void valueChanged(RecordSource store, int row, int column, String oldValue);
+
+    /** Все записи удалены. */
+    void cleared();
+}
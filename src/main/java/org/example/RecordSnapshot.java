@@ -0,0 +1,50 @@
+package org.example;
+
+/**
+ * Неизменяемый снимок хранилища на момент вызова {@link RecordStore#snapshot()}.
+ * Разделяет страницы данных с хранилищем, поэтому создаётся без копирования записей.
+ * Может читаться из любого потока, пока EDT продолжает изменять хранилище.
+ */
+final class RecordSnapshot implements RecordSource {
+    private final RecordStore.Encoding[] encodings;
+    private final String[][][] stringPages;
+    private final int[][][] intPages;
+    private final StringDictionary[] dictionaries;
+    private final int size;
+    private final long version;
+
+    RecordSnapshot(RecordStore.Encoding[] encodings, String[][][] stringPages, int[][][] intPages,
+                   StringDictionary[] dictionaries, int size, long version) {
+        this.encodings = encodings;
+        this.stringPages = stringPages;
+        this.intPages = intPages;
+        this.dictionaries = dictionaries;
+        this.size = size;
+        this.version = version;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return encodings.length;
+    }
+
+    /**
+     * Версия хранилища, с которой снят снимок.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String get(int row, int column) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне диапазона 0.." + (size - 1));
+        }
+        return RecordStore.read(encodings, stringPages, intPages, dictionaries, row, column);
+    }
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+/**
+ * Источник записей только для чтения: хранилище или его снимок.
+ */
+interface RecordSource {
+    int size();
+
+    int getColumnCount();
+
+    /**
+     * Возвращает значение ячейки.
+     *
+     * @param row    Индекс записи.
+     * @param column Индекс столбца.
+     */
+    String get(int row, int column);
+
+    /**
+     * Возвращает копию записи в виде массива строк.
+     */
+    default String[] getRow(int row) {
+        String[] values = new String[getColumnCount()];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = get(row, c);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,312 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Колоночное хранилище записей учителей или учеников.
+ * Каждый столбец хранится отдельно: ФИО — интернированными строками,
+ * столбцы с малым числом значений — кодами словаря, успеваемость — числами.
+ * <p>
+ * Столбцы разбиты на страницы по {@value #PAGE_SIZE} записей. {@link #snapshot()} копирует только
+ * каталоги страниц, а сами страницы остаются общими со снимком; страница копируется при первой
+ * записи в неё после снимка. Поэтому снимок создаётся мгновенно и не меняется при дальнейших правках.
+ * Хранилище изменяется только в потоке обработки событий Swing.
+ */
+class RecordStore implements RecordSource {
+    /**
+     * Способ хранения столбца.
+     */
+    enum Encoding {
+        /** Строки с общим пулом одинаковых значений. */
+        INTERNED,
+        /** Коды словаря в массиве int[]. */
+        DICTIONARY,
+        /** Целые числа в массиве int[]; нечисловые значения хранятся как отрицательные коды словаря. */
+        NUMERIC
+    }
+
+    static final int PAGE_SHIFT = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final Encoding[] encodings;
+    private String[][][] stringPages; // [столбец][страница][позиция]
+    private int[][][] intPages;       // [столбец][страница][позиция]
+    private int[][] pageEpochs;       // [столбец][страница]: эпоха, в которой страница создана
+    private StringDictionary[] dictionaries;
+    private int epoch;                // Увеличивается при каждом снимке
+    private int size;
+    private volatile long version;    // Увеличивается при каждом изменении
+
+    public RecordStore(Encoding... encodings) {
+        this.encodings = encodings.clone();
+        reset();
+    }
+
+    /**
+     * Хранилище учителей: ФИО, предмет, классы.
+     */
+    public static RecordStore forTeachers() {
+        return new RecordStore(Encoding.INTERNED, Encoding.DICTIONARY, Encoding.DICTIONARY);
+    }
+
+    /**
+     * Хранилище учеников: ФИО, класс, успеваемость.
+     */
+    public static RecordStore forStudents() {
+        return new RecordStore(Encoding.INTERNED, Encoding.DICTIONARY, Encoding.NUMERIC);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return encodings.length;
+    }
+
+    /**
+     * Номер версии данных; увеличивается при каждом изменении хранилища.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String get(int row, int column) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне диапазона 0.." + (size - 1));
+        }
+        return read(encodings, stringPages, intPages, dictionaries, row, column);
+    }
+
+    /**
+     * Создаёт неизменяемый снимок текущего состояния. Страницы данных не копируются.
+     * Вызывается в потоке, который изменяет хранилище.
+     */
+    public RecordSnapshot snapshot() {
+        String[][][] stringDirectory = new String[encodings.length][][];
+        int[][][] intDirectory = new int[encodings.length][][];
+        int pages = pageCount(size);
+        for (int c = 0; c < encodings.length; c++) {
+            if (stringPages[c] != null) {
+                stringDirectory[c] = Arrays.copyOf(stringPages[c], pages);
+            } else {
+                intDirectory[c] = Arrays.copyOf(intPages[c], pages);
+            }
+        }
+        epoch++; // Все существующие страницы теперь общие со снимком
+        return new RecordSnapshot(encodings, stringDirectory, intDirectory, dictionaries.clone(), size, version);
+    }
+
+    /**
+     * Добавляет запись в конец хранилища.
+     */
+    public void add(String[] values) {
+        ensureCapacity(size + 1);
+        for (int c = 0; c < encodings.length; c++) {
+            store(size, c, values[c]);
+        }
+        size++;
+        version++;
+    }
+
+    /**
+     * Добавляет пачку записей в конец хранилища.
+     */
+    public void addAll(List<String[]> rows) {
+        ensureCapacity(size + rows.size());
+        for (String[] row : rows) {
+            add(row);
+        }
+    }
+
+    /**
+     * Заменяет значение ячейки.
+     */
+    public void set(int row, int column, String value) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне диапазона 0.." + (size - 1));
+        }
+        store(row, column, value);
+        version++;
+    }
+
+    /**
+     * Удаляет запись со сдвигом последующих.
+     */
+    public void remove(int row) {
+        removeRows(new int[]{row});
+    }
+
+    /**
+     * Удаляет несколько записей за один проход уплотнения.
+     *
+     * @param sortedRows Отсортированные по возрастанию индексы записей без повторов.
+     */
+    public void removeRows(int[] sortedRows) {
+        if (sortedRows.length == 0) {
+            return;
+        }
+        if (sortedRows[0] < 0 || sortedRows[sortedRows.length - 1] >= size) {
+            throw new IndexOutOfBoundsException("Строки вне диапазона 0.." + (size - 1));
+        }
+        for (int c = 0; c < encodings.length; c++) {
+            // Переносим записи между удаляемыми строками на их итоговые места
+            int write = sortedRows[0];
+            for (int k = 0; k < sortedRows.length; k++) {
+                int to = k + 1 < sortedRows.length ? sortedRows[k + 1] : size;
+                for (int read = sortedRows[k] + 1; read < to; read++, write++) {
+                    move(c, read, write);
+                }
+            }
+            if (stringPages[c] != null) {
+                for (int row = write; row < size; row++) {
+                    writableStringPage(c, row >>> PAGE_SHIFT)[row & PAGE_MASK] = null;
+                }
+            }
+        }
+        size -= sortedRows.length;
+        version++;
+    }
+
+    /**
+     * Удаляет все записи. Словари создаются заново, снимки сохраняют прежние.
+     */
+    public void clear() {
+        reset();
+        version++;
+    }
+
+    private void reset() {
+        stringPages = new String[encodings.length][][];
+        intPages = new int[encodings.length][][];
+        pageEpochs = new int[encodings.length][0];
+        dictionaries = new StringDictionary[encodings.length];
+        for (int c = 0; c < encodings.length; c++) {
+            if (encodings[c] == Encoding.INTERNED) {
+                stringPages[c] = new String[0][];
+            } else {
+                intPages[c] = new int[0][];
+                dictionaries[c] = new StringDictionary();
+            }
+        }
+        size = 0;
+    }
+
+    private void move(int column, int from, int to) {
+        if (stringPages[column] != null) {
+            String value = stringPages[column][from >>> PAGE_SHIFT][from & PAGE_MASK];
+            writableStringPage(column, to >>> PAGE_SHIFT)[to & PAGE_MASK] = value;
+        } else {
+            int value = intPages[column][from >>> PAGE_SHIFT][from & PAGE_MASK];
+            writableIntPage(column, to >>> PAGE_SHIFT)[to & PAGE_MASK] = value;
+        }
+    }
+
+    private void store(int row, int column, String value) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        switch (encodings[column]) {
+            case INTERNED:
+                writableStringPage(column, page)[slot] = value.intern();
+                break;
+            case DICTIONARY:
+                writableIntPage(column, page)[slot] = dictionaries[column].encode(value);
+                break;
+            default:
+                int number = parseCanonicalInt(value);
+                writableIntPage(column, page)[slot] = number >= 0 ? number : -dictionaries[column].encode(value) - 1;
+                break;
+        }
+    }
+
+    /**
+     * Страница для записи: если она общая со снимком, сначала копируется.
+     */
+    private String[] writableStringPage(int column, int page) {
+        if (pageEpochs[column][page] != epoch) {
+            stringPages[column][page] = stringPages[column][page].clone();
+            pageEpochs[column][page] = epoch;
+        }
+        return stringPages[column][page];
+    }
+
+    private int[] writableIntPage(int column, int page) {
+        if (pageEpochs[column][page] != epoch) {
+            intPages[column][page] = intPages[column][page].clone();
+            pageEpochs[column][page] = epoch;
+        }
+        return intPages[column][page];
+    }
+
+    private void ensureCapacity(int required) {
+        int pages = pageCount(required);
+        for (int c = 0; c < encodings.length; c++) {
+            int existing = pageEpochs[c].length;
+            if (existing >= pages) {
+                continue;
+            }
+            pageEpochs[c] = Arrays.copyOf(pageEpochs[c], pages);
+            if (stringPages[c] != null) {
+                stringPages[c] = Arrays.copyOf(stringPages[c], pages);
+                for (int p = existing; p < pages; p++) {
+                    stringPages[c][p] = new String[PAGE_SIZE];
+                }
+            } else {
+                intPages[c] = Arrays.copyOf(intPages[c], pages);
+                for (int p = existing; p < pages; p++) {
+                    intPages[c][p] = new int[PAGE_SIZE];
+                }
+            }
+            for (int p = existing; p < pages; p++) {
+                pageEpochs[c][p] = epoch;
+            }
+        }
+    }
+
+    private static int pageCount(int rows) {
+        return (rows + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+    }
+
+    /**
+     * Разбирает неотрицательное число без ведущих нулей, чтобы значение
+     * восстанавливалось в точности. Возвращает -1, если строка не такое число.
+     */
+    private static int parseCanonicalInt(String value) {
+        int length = value.length();
+        if (length == 0 || length > 9 || (length > 1 && value.charAt(0) == '0')) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            result = result * 10 + (ch - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Читает значение ячейки из страниц столбцов (общая часть хранилища и снимка).
+     */
+    static String read(Encoding[] encodings, String[][][] stringPages, int[][][] intPages,
+                       StringDictionary[] dictionaries, int row, int column) {
+        int page = row >>> PAGE_SHIFT;
+        int slot = row & PAGE_MASK;
+        switch (encodings[column]) {
+            case INTERNED:
+                return stringPages[column][page][slot];
+            case DICTIONARY:
+                return dictionaries[column].decode(intPages[column][page][slot]);
+            default:
+                int value = intPages[column][page][slot];
+                return value >= 0 ? Integer.toString(value) : dictionaries[column].decode(-value - 1);
+        }
+    }
+}
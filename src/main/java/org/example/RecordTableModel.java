@@ -0,0 +1,291 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Модель таблицы, которая читает данные напрямую из {@link RecordStore},
+ * не создавая второй копии строк.
+ * <p>
+ * Хранилище и индекс изменяются под блокировкой записи {@link #lock}; другие потоки ищут
+ * по индексу через {@link #find(RecordSnapshot, int, String, boolean)}, не блокируя поток-владелец,
+ * пока данные не меняются.
+ */
+class RecordTableModel extends AbstractTableModel {
+    private final RecordStore store;
+    private final String[] columnNames;
+    private final TrigramIndex index;
+    private final List<RecordObserver> observers = new ArrayList<>();
+    private final StampedLock lock = new StampedLock();
+
+    public RecordTableModel(RecordStore store, String[] columnNames) {
+        this.store = store;
+        this.columnNames = columnNames.clone();
+        this.index = new TrigramIndex(store.getColumnCount());
+        index.rowsAppended(store, 0, store.size());
+    }
+
+    /**
+     * Подключает наблюдателя изменений и сообщает ему об уже имеющихся строках.
+     * Вызывается в потоке, изменяющем модель.
+     */
+    public void addObserver(RecordObserver observer) {
+        observers.add(observer);
+        observer.rowsAppended(store, 0, store.size());
+    }
+
+    /**
+     * Ищет строки модели, в которых столбец содержит значение (без учёта регистра).
+     *
+     * @param column Индекс столбца.
+     * @param query  Искомая подстрока.
+     * @param prefix true, чтобы искать только значения, начинающиеся с query.
+     * @return Множество индексов найденных строк модели.
+     */
+    public BitSet find(int column, String query, boolean prefix) {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.SEARCH.start()) {
+            BitSet result = index.find(store, column, query, prefix);
+            sample.succeeded(result.cardinality());
+            return result;
+        }
+    }
+
+    /**
+     * Ищет строки по индексу из потока, который не изменяет модель. Кандидаты проверяются
+     * по снимку, поэтому результат относится к нему.
+     * Сначала индекс читается без блокировки и результат принимается, только если за время
+     * чтения модель не изменялась; иначе поиск повторяется под блокировкой чтения.
+     *
+     * @param snapshot Опубликованный снимок хранилища модели.
+     * @return Множество индексов строк снимка или null, если модель уже новее снимка.
+     */
+    public BitSet find(RecordSnapshot snapshot, int column, String query, boolean prefix) {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.SEARCH.start()) {
+            BitSet result = null;
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0 && store.getVersion() == snapshot.getVersion()) {
+                try {
+                    BitSet rows = index.find(snapshot, column, query, prefix);
+                    if (lock.validate(stamp)) {
+                        result = rows;
+                    }
+                } catch (RuntimeException e) {
+                    // Индекс изменялся во время чтения; результат проверяется ниже под блокировкой
+                }
+            }
+            if (result == null) {
+                stamp = lock.readLock();
+                try {
+                    if (store.getVersion() != snapshot.getVersion()) {
+                        return null;
+                    }
+                    result = index.find(snapshot, column, query, prefix);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            sample.succeeded(result.cardinality());
+            return result;
+        }
+    }
+
+    /**
+     * Уточняет ранее найденное множество строк для более длинного запроса,
+     * проверяя только строки из этого множества.
+     *
+     * @param previous Строки, найденные по запросу, который содержится в query.
+     * @param column   Индекс столбца.
+     * @param query    Новый запрос.
+     * @param prefix   true для поиска по префиксу.
+     * @return Множество индексов найденных строк модели.
+     */
+    public BitSet refine(BitSet previous, int column, String query, boolean prefix) {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.SEARCH.start()) {
+            BitSet result = new BitSet(store.size());
+            int checked = 0;
+            for (int row = previous.nextSetBit(0); row >= 0 && row < store.size(); row = previous.nextSetBit(row + 1)) {
+                if ((++checked & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Поиск отменён");
+                }
+                if (TrigramIndex.matches(store.get(row, column), query, prefix)) {
+                    result.set(row);
+                }
+            }
+            sample.succeeded(result.cardinality());
+            return result;
+        }
+    }
+
+    /**
+     * Номер версии данных модели; увеличивается при каждом изменении.
+     * По нему фоновые чтения проверяют, не изменились ли данные.
+     */
+    public long getModCount() {
+        return store.getVersion();
+    }
+
+    public RecordStore getStore() {
+        return store;
+    }
+
+    @Override
+    public int getRowCount() {
+        return store.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return store.get(row, column);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return true;
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        String oldValue = store.get(row, column);
+        String newValue = value != null ? value.toString() : "";
+        long stamp = lock.writeLock();
+        try {
+            store.set(row, column, newValue);
+            index.valueChanged(row, column, oldValue, newValue);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (RecordObserver observer : observers) {
+            observer.valueChanged(store, row, column, oldValue);
+        }
+        fireTableCellUpdated(row, column);
+    }
+
+    /**
+     * Добавляет одну запись.
+     */
+    public void addRow(String[] values) {
+        long stamp = lock.writeLock();
+        try {
+            store.add(values);
+            index.rowsAppended(store, store.size() - 1, store.size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (RecordObserver observer : observers) {
+            observer.rowsAppended(store, store.size() - 1, store.size());
+        }
+        fireTableRowsInserted(store.size() - 1, store.size() - 1);
+    }
+
+    /**
+     * Добавляет пачку записей одним событием модели.
+     */
+    public void appendRows(List<String[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int firstRow = store.size();
+        long stamp = lock.writeLock();
+        try {
+            store.addAll(rows);
+            index.rowsAppended(store, firstRow, store.size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (RecordObserver observer : observers) {
+            observer.rowsAppended(store, firstRow, store.size());
+        }
+        fireTableRowsInserted(firstRow, store.size() - 1);
+    }
+
+    /**
+     * Удаляет одну запись.
+     */
+    public void removeRow(int row) {
+        for (RecordObserver observer : observers) {
+            observer.rowsRemoving(store, new int[]{row});
+        }
+        long stamp = lock.writeLock();
+        try {
+            store.remove(row);
+            index.rowsRemoved(new int[]{row});
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Удаляет несколько строк за один проход уплотнения хранилища и индекса
+     * с одним событием модели.
+     *
+     * @param modelRows Индексы строк модели в любом порядке, возможно с повторами.
+     * @return Количество удалённых строк.
+     */
+    public int removeRows(int[] modelRows) {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.DELETE.start()) {
+            int[] rows = Arrays.stream(modelRows).sorted().distinct().toArray();
+            if (rows.length == 0) {
+                sample.succeeded(0);
+                return 0;
+            }
+            for (RecordObserver observer : observers) {
+                observer.rowsRemoving(store, rows);
+            }
+            long stamp = lock.writeLock();
+            try {
+                store.removeRows(rows);
+                index.rowsRemoved(rows);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            int first = rows[0];
+            int last = rows[rows.length - 1];
+            if (last - first + 1 == rows.length) {
+                fireTableRowsDeleted(first, last); // Непрерывный диапазон
+            } else {
+                fireTableDataChanged();
+            }
+            sample.succeeded(rows.length);
+            return rows.length;
+        }
+    }
+
+    /**
+     * Удаляет все записи.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            store.clear();
+            index.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        for (RecordObserver observer : observers) {
+            observer.cleared();
+        }
+        fireTableDataChanged();
+    }
+}
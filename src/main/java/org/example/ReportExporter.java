@@ -0,0 +1,103 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+
+/**
+ * Заполнение отчёта и экспорт заполненного отчёта в PDF, HTML, CSV и XLSX.
+ * Экспортёры только читают {@link JasperPrint}, поэтому один заполненный отчёт
+ * можно одновременно экспортировать в несколько форматов в разных потоках.
+ */
+class ReportExporter {
+    /** Все поддерживаемые форматы. */
+    static final List<String> FORMATS = List.of("PDF", "HTML", "CSV", "XLSX");
+
+    /**
+     * Заполняет отчёт данными, учитывая время заполнения и число страниц в метриках {@link HotPathMetrics#FILL}.
+     */
+    static JasperPrint fillReport(JasperReport report, Map<String, Object> parameters, JRDataSource dataSource)
+            throws JRException {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.FILL.start()) {
+            JasperPrint print = JasperFillManager.fillReport(report, parameters, dataSource);
+            sample.succeeded(print.getPages().size());
+            return print;
+        }
+    }
+
+    /**
+     * Экспортирует отчёт в память (изображения встраиваются в HTML).
+     */
+    static byte[] toBytes(JasperPrint print, String format) throws JRException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        toStream(print, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Экспортирует отчёт потоково в файл, не собирая результат в памяти.
+     */
+    static void toFile(JasperPrint print, String format, File file) throws JRException, IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            toStream(print, format, out);
+        }
+    }
+
+    /**
+     * Экспортирует отчёт в поток. Поток не закрывается.
+     */
+    static void toStream(JasperPrint print, String format, OutputStream out) throws JRException {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.EXPORT.start()) {
+            export(print, format, out);
+            sample.succeeded(print.getPages().size());
+        }
+    }
+
+    private static void export(JasperPrint print, String format, OutputStream out) throws JRException {
+        net.sf.jasperreports.export.SimpleExporterInput input = new net.sf.jasperreports.export.SimpleExporterInput(print);
+        switch (format.toUpperCase()) {
+            case "PDF":
+                JasperExportManager.exportReportToPdfStream(print, out);
+                break;
+            case "HTML": {
+                net.sf.jasperreports.engine.export.HtmlExporter exporter = new net.sf.jasperreports.engine.export.HtmlExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new net.sf.jasperreports.export.SimpleHtmlExporterOutput(out, "UTF-8"));
+                net.sf.jasperreports.export.SimpleHtmlReportConfiguration configuration =
+                        new net.sf.jasperreports.export.SimpleHtmlReportConfiguration();
+                configuration.setEmbedImage(true);
+                exporter.setConfiguration(configuration);
+                exporter.exportReport();
+                break;
+            }
+            case "CSV": {
+                net.sf.jasperreports.engine.export.JRCsvExporter exporter = new net.sf.jasperreports.engine.export.JRCsvExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new net.sf.jasperreports.export.SimpleWriterExporterOutput(out, "UTF-8"));
+                exporter.exportReport();
+                break;
+            }
+            case "XLSX": {
+                net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter exporter = new net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter();
+                exporter.setExporterInput(input);
+                exporter.setExporterOutput(new net.sf.jasperreports.export.SimpleOutputStreamExporterOutput(out));
+                exporter.exportReport();
+                break;
+            }
+            default:
+                throw new JRException("Неизвестный формат отчёта: " + format);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import net.sf.jasperreports.engine.JasperPrint;
+
+/**
+ * Кэш готовых отчётов: заполненных {@link JasperPrint} и экспортированных файлов.
+ * Ключ — версия данных учеников, хэш шаблона и формат, поэтому повторный отчёт без правок
+ * не заполняется и не экспортируется заново. Записи вытесняются в порядке давности использования,
+ * когда их суммарный размер превышает бюджет памяти ({@value #BUDGET_PROPERTY}, байт).
+ */
+class ReportResultCache {
+    static final String BUDGET_PROPERTY = "org.example.report.cache.bytes";
+    static final long DEFAULT_BUDGET = 64L << 20;
+
+    /** Оценка памяти, занимаемой одной заполненной страницей отчёта. */
+    private static final long PAGE_SIZE_ESTIMATE = 32 * 1024;
+
+    private final long budget;
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    /**
+     * Закэшированный результат и его оценочный размер.
+     */
+    private static class CachedResult {
+        final long dataVersion;
+        final Object value;
+        final long size;
+
+        CachedResult(long dataVersion, Object value, long size) {
+            this.dataVersion = dataVersion;
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Кэш с бюджетом из системного свойства {@value #BUDGET_PROPERTY}.
+     */
+    public ReportResultCache() {
+        this(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * @param budget Наибольший суммарный размер записей в байтах.
+     */
+    public ReportResultCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Возвращает заполненный отчёт или null.
+     */
+    public synchronized JasperPrint getPrint(long dataVersion, String templateHash) {
+        CachedResult cached = results.get(printKey(dataVersion, templateHash));
+        return cached != null ? (JasperPrint) cached.value : null;
+    }
+
+    /**
+     * Запоминает заполненный отчёт. Отчёты с вытеснением страниц на диск не кэшируются.
+     */
+    public synchronized void putPrint(long dataVersion, String templateHash, JasperPrint print) {
+        put(printKey(dataVersion, templateHash), dataVersion, print, Math.max(1, print.getPages().size()) * PAGE_SIZE_ESTIMATE);
+    }
+
+    /**
+     * Возвращает экспортированный отчёт или null.
+     */
+    public synchronized byte[] getOutput(long dataVersion, String templateHash, String format) {
+        CachedResult cached = results.get(outputKey(dataVersion, templateHash, format));
+        return cached != null ? (byte[]) cached.value : null;
+    }
+
+    public synchronized void putOutput(long dataVersion, String templateHash, String format, byte[] output) {
+        put(outputKey(dataVersion, templateHash, format), dataVersion, output, output.length);
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        usedBytes = 0;
+    }
+
+    private void put(String key, long dataVersion, Object value, long size) {
+        if (size > budget) {
+            return;
+        }
+        // Версии данных только растут: результаты для старых версий больше не понадобятся
+        results.values().removeIf(cached -> {
+            if (cached.dataVersion < dataVersion) {
+                usedBytes -= cached.size;
+                return true;
+            }
+            return false;
+        });
+        CachedResult previous = results.put(key, new CachedResult(dataVersion, value, size));
+        if (previous != null) {
+            usedBytes -= previous.size;
+        }
+        usedBytes += size;
+        Iterator<CachedResult> eldest = results.values().iterator();
+        while (usedBytes > budget && eldest.hasNext()) {
+            usedBytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    private static String printKey(long dataVersion, String templateHash) {
+        return dataVersion + "/" + templateHash;
+    }
+
+    private static String outputKey(long dataVersion, String templateHash, String format) {
+        return printKey(dataVersion, templateHash) + "/" + format.toUpperCase();
+    }
+}
@@ -0,0 +1,252 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+
+/**
+ * Формирование отдельного отчёта для каждого класса.
+ * Ученики группируются по классу, отчёты заполняются и экспортируются параллельно на пуле потоков
+ * с общим скомпилированным шаблоном. Результат — файлы в каталоге или один ZIP-архив.
+ */
+class ReportShardGenerator {
+    private static final int ZIP_BUFFER_SIZE = 1 << 16;
+
+    private final JasperReport report;
+    private final int threads;
+
+    /**
+     * @param report  Скомпилированный шаблон, общий для всех отчётов.
+     * @param threads Число потоков заполнения и экспорта.
+     */
+    public ReportShardGenerator(JasperReport report, int threads) {
+        this.report = report;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Группирует учеников по классу так же, как {@link ClassStatistics} ({@link ClassStatistics#classKey}).
+     *
+     * @return Индексы записей каждого класса; классы упорядочены по названию.
+     */
+    static Map<String, int[]> groupByClass(RecordSource students) {
+        TreeMap<String, IntList> groups = new TreeMap<>();
+        for (int row = 0; row < students.size(); row++) {
+            groups.computeIfAbsent(ClassStatistics.classKey(students.get(row, 1)), k -> new IntList()).add(row);
+        }
+        Map<String, int[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, IntList> group : groups.entrySet()) {
+            result.put(group.getKey(), group.getValue().toArray());
+        }
+        return result;
+    }
+
+    /**
+     * Формирует отчёты по классам в каталоге.
+     * Если имя класса нельзя использовать в имени файла этой системы, файл получает номер класса.
+     *
+     * @param students  Ученики (снимок хранилища).
+     * @param format    "PDF" или "HTML".
+     * @param directory Каталог для файлов отчётов.
+     * @return Созданные файлы в порядке классов.
+     * @throws JRException при ошибке заполнения или экспорта.
+     */
+    public List<File> export(RecordSource students, String format, File directory) throws JRException {
+        Map<String, int[]> groups = groupByClass(students);
+        List<File> files = files(directory, fileNames(groups.keySet(), format), format);
+        exportAll(students, format, new ArrayList<>(groups.values()), files);
+        return files;
+    }
+
+    /**
+     * Формирует отчёты по классам и упаковывает их в один ZIP-архив.
+     * Имена элементов архива содержат названия классов. Отчёты экспортируются во временный каталог
+     * сразу под этими именами: HTML ссылается на изображения в каталоге &lt;файл&gt;_files по имени
+     * своего файла, поэтому переименование после экспорта нарушило бы ссылки.
+     *
+     * @param zipFile Файл архива.
+     * @return Количество отчётов в архиве.
+     */
+    public int exportZip(RecordSource students, String format, File zipFile) throws JRException, IOException {
+        Map<String, int[]> groups = groupByClass(students);
+        File directory = java.nio.file.Files.createTempDirectory("report-shards").toFile();
+        try {
+            List<File> files = files(directory, fileNames(groups.keySet(), format), format);
+            exportAll(students, format, new ArrayList<>(groups.values()), files);
+
+            File temp = new File(zipFile.getPath() + ".tmp");
+            try (java.util.zip.ZipOutputStream zip = new java.util.zip.ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp), ZIP_BUFFER_SIZE))) {
+                for (File file : files) {
+                    addToZip(zip, file, file.getName());
+                    // HTML-экспорт кладёт изображения в каталог <файл>_files рядом с отчётом
+                    addToZip(zip, new File(file.getPath() + "_files"), file.getName() + "_files");
+                }
+            }
+            java.nio.file.Files.move(temp.toPath(), zipFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            return files.size();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Файлы отчётов классов в каталоге. Если имя класса нельзя использовать в имени файла этой системы,
+     * файл получает номер класса; номер не совпадает ни с одним другим именем, иначе один отчёт
+     * перезаписал бы другой.
+     */
+    static List<File> files(File directory, List<String> names, String format) {
+        String extension = "." + format.toLowerCase();
+        Set<String> used = new HashSet<>();
+        String[] chosen = new String[names.size()];
+        // Сначала занимаются допустимые имена, затем для остальных подбираются свободные номера
+        for (int i = 0; i < names.size(); i++) {
+            try {
+                new File(directory, names.get(i)).toPath();
+                chosen[i] = names.get(i);
+                used.add(chosen[i].toLowerCase());
+            } catch (java.nio.file.InvalidPathException e) {
+                // Имя заменяется ниже
+            }
+        }
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (chosen[i] == null) {
+                String base = "class_" + (i + 1);
+                chosen[i] = base + extension;
+                for (int n = 2; !used.add(chosen[i].toLowerCase()); n++) {
+                    chosen[i] = base + "_" + n + extension;
+                }
+            }
+            files.add(new File(directory, chosen[i]));
+        }
+        return files;
+    }
+
+    /**
+     * Заполняет и экспортирует отчёты параллельно; при первой ошибке остальные задачи прерываются.
+     */
+    private void exportAll(RecordSource students, String format, List<int[]> groups, List<File> files) throws JRException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, groups.size())), r -> {
+            Thread thread = new Thread(r, "ReportShardThread-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (int i = 0; i < groups.size(); i++) {
+                int[] rows = groups.get(i);
+                File file = files.get(i);
+                futures.add(pool.submit(() -> exportShard(students, rows, format, file)));
+            }
+            for (Future<File> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Формирование отчётов по классам прервано");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JRException) {
+                throw (JRException) cause;
+            }
+            throw new JRException("Ошибка при формировании отчёта по классу: " + cause.getMessage(), cause);
+        } finally {
+            pool.shutdownNow(); // При ошибке остальные отчёты не нужны
+        }
+    }
+
+    private File exportShard(RecordSource students, int[] rows, String format, File file) throws JRException {
+        JRSwapFileVirtualizer virtualizer = ReportVirtualizers.createFor(rows.length);
+        try {
+            Map<String, Object> parameters = new HashMap<>();
+            if (virtualizer != null) {
+                parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            }
+            JasperPrint print = ReportExporter.fillReport(report, parameters, new StudentDataSource(students, rows));
+            if (virtualizer != null) {
+                virtualizer.setReadOnly(true);
+            }
+            try (HotPathMetrics.Sample sample = HotPathMetrics.EXPORT.start()) {
+                if ("PDF".equalsIgnoreCase(format)) {
+                    JasperExportManager.exportReportToPdfFile(print, file.getPath());
+                } else {
+                    JasperExportManager.exportReportToHtmlFile(print, file.getPath());
+                }
+                sample.succeeded(print.getPages().size());
+            }
+            return file;
+        } finally {
+            if (virtualizer != null) {
+                virtualizer.cleanup();
+            }
+        }
+    }
+
+    /**
+     * Имена файлов отчётов классов: недопустимые в именах файлов символы заменяются,
+     * совпадающие после замены имена получают номер.
+     */
+    static List<String> fileNames(Collection<String> classNames, String format) {
+        Set<String> used = new HashSet<>();
+        List<String> names = new ArrayList<>();
+        String extension = "." + format.toLowerCase();
+        for (String className : classNames) {
+            String base = "class_" + (className.isEmpty() ? "без_класса" : className.replaceAll("[^\\p{L}\\p{N}_-]", "_"));
+            String name = base + extension;
+            for (int n = 2; !used.add(name.toLowerCase()); n++) {
+                name = base + "_" + n + extension;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static void addToZip(java.util.zip.ZipOutputStream zip, File file, String entryName) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    addToZip(zip, child, entryName + "/" + child.getName());
+                }
+            }
+        } else if (file.isFile()) {
+            zip.putNextEntry(new java.util.zip.ZipEntry(entryName));
+            java.nio.file.Files.copy(file.toPath(), zip);
+            zip.closeEntry();
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,153 @@
+package org.example;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import org.apache.log4j.Logger;
+
+/**
+ * Кэш скомпилированных шаблонов отчётов.
+ * Шаблон хранится в памяти по пути и хэшу содержимого JRXML, а также сохраняется
+ * рядом с шаблоном в файл .jasper, поэтому после перезапуска компиляция не нужна.
+ * Перекомпиляция выполняется только при изменении содержимого JRXML.
+ */
+class ReportTemplateCache {
+    private static final Logger log = Logger.getLogger(ReportTemplateCache.class);
+
+    /** Свойство отчёта, в котором хранится хэш исходного JRXML. */
+    static final String SOURCE_HASH_PROPERTY = "org.example.report.source.sha256";
+    /**
+     * Адаптер данных Jaspersoft Studio, указывающий на файл на машине автора шаблона.
+     * Данные передаются в отчёт напрямую, поэтому свойство удаляется при компиляции.
+     */
+    static final String DATA_ADAPTER_PROPERTY = "net.sf.jasperreports.data.adapter";
+
+    private final Map<String, CachedTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Скомпилированный шаблон и признаки исходного файла, из которого он получен.
+     */
+    private static class CachedTemplate {
+        final String hash;
+        final long lastModified;
+        final long length;
+        final JasperReport report;
+
+        CachedTemplate(String hash, long lastModified, long length, JasperReport report) {
+            this.hash = hash;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.report = report;
+        }
+    }
+
+    /**
+     * Возвращает скомпилированный шаблон для JRXML-файла.
+     *
+     * @param jrxmlPath Путь к JRXML-шаблону.
+     * @return Скомпилированный отчёт.
+     * @throws JRException при ошибке чтения или компиляции шаблона.
+     */
+    public synchronized JasperReport get(String jrxmlPath) throws JRException {
+        File jrxmlFile = new File(jrxmlPath).getAbsoluteFile();
+        String key = jrxmlFile.getPath();
+        long lastModified = jrxmlFile.lastModified();
+        long length = jrxmlFile.length();
+
+        // Файл не менялся с прошлого обращения — хэш можно не пересчитывать
+        CachedTemplate cached = templates.get(key);
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            return cached.report;
+        }
+
+        String hash = sha256(jrxmlFile);
+        if (cached != null && cached.hash.equals(hash)) {
+            templates.put(key, new CachedTemplate(hash, lastModified, length, cached.report));
+            return cached.report;
+        }
+
+        File jasperFile = compiledFileFor(jrxmlFile);
+        JasperReport report = loadCompiled(jasperFile, hash);
+        if (report == null) {
+            log.info("Компиляция шаблона отчёта: " + key);
+            try (HotPathMetrics.Sample sample = HotPathMetrics.COMPILE.start()) {
+                report = JasperCompileManager.compileReport(key);
+                sample.succeeded(1);
+            }
+            report.removeProperty(DATA_ADAPTER_PROPERTY);
+            report.setProperty(SOURCE_HASH_PROPERTY, hash);
+            try {
+                JRSaver.saveObject(report, jasperFile);
+                log.debug("Скомпилированный шаблон сохранён: " + jasperFile.getPath());
+            } catch (JRException e) {
+                log.warn("Не удалось сохранить скомпилированный шаблон " + jasperFile.getPath() + ": " + e.getMessage());
+            }
+        }
+        templates.put(key, new CachedTemplate(hash, lastModified, length, report));
+        return report;
+    }
+
+    /**
+     * Возвращает хэш содержимого шаблона, под которым он сейчас закэширован, или null.
+     */
+    public String getHash(String jrxmlPath) {
+        CachedTemplate cached = templates.get(new File(jrxmlPath).getAbsolutePath());
+        return cached != null ? cached.hash : null;
+    }
+
+    /**
+     * Загружает ранее сохранённый файл .jasper, если он собран из JRXML с тем же хэшем.
+     */
+    private JasperReport loadCompiled(File jasperFile, String hash) {
+        if (!jasperFile.isFile()) {
+            return null;
+        }
+        try {
+            JasperReport report = (JasperReport) JRLoader.loadObject(jasperFile);
+            if (hash.equals(report.getProperty(SOURCE_HASH_PROPERTY))) {
+                log.debug("Использован скомпилированный шаблон: " + jasperFile.getPath());
+                return report;
+            }
+            log.debug("Скомпилированный шаблон устарел: " + jasperFile.getPath());
+        } catch (JRException | ClassCastException e) {
+            log.warn("Не удалось прочитать скомпилированный шаблон " + jasperFile.getPath() + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static File compiledFileFor(File jrxmlFile) {
+        String name = jrxmlFile.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return new File(jrxmlFile.getParentFile(), baseName + ".jasper");
+    }
+
+    private static String sha256(File file) throws JRException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new JRException("Не удалось прочитать шаблон отчёта: " + file.getPath(), e);
+        }
+    }
+}
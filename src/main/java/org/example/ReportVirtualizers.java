@@ -0,0 +1,37 @@
+package org.example;
+
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+
+/**
+ * Вытеснение страниц больших отчётов в файл подкачки.
+ * Заполненные страницы сериализуются на диск, в памяти остаётся не более {@link #PAGE_CACHE_SIZE} страниц,
+ * поэтому расход памяти при заполнении, экспорте и просмотре не зависит от числа учеников.
+ * Порог и размер кэша задаются системными свойствами {@value #THRESHOLD_PROPERTY}
+ * и {@value #PAGE_CACHE_PROPERTY}.
+ */
+class ReportVirtualizers {
+    static final String THRESHOLD_PROPERTY = "org.example.report.virtualizer.threshold";
+    static final String PAGE_CACHE_PROPERTY = "org.example.report.virtualizer.pages";
+
+    /** Число учеников, начиная с которого отчёт заполняется с вытеснением страниц. */
+    static final int LARGE_REPORT_THRESHOLD = Integer.getInteger(THRESHOLD_PROPERTY, 20_000);
+    /** Число страниц отчёта, одновременно хранимых в памяти. */
+    static final int PAGE_CACHE_SIZE = Math.max(2, Integer.getInteger(PAGE_CACHE_PROPERTY, 50));
+
+    private static final int SWAP_BLOCK_SIZE = 4096;
+    private static final int SWAP_MIN_GROW_BLOCKS = 256;
+
+    /**
+     * Создаёт виртуализатор для отчёта по указанному числу учеников.
+     *
+     * @return Виртуализатор или null, если отчёт небольшой и заполняется в памяти.
+     */
+    public static JRSwapFileVirtualizer createFor(int students) {
+        if (students < LARGE_REPORT_THRESHOLD) {
+            return null;
+        }
+        JRSwapFile swapFile = new JRSwapFile(System.getProperty("java.io.tmpdir"), SWAP_BLOCK_SIZE, SWAP_MIN_GROW_BLOCKS);
+        return new JRSwapFileVirtualizer(PAGE_CACHE_SIZE, swapFile, true);
+    }
+}
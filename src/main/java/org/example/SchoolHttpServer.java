@@ -0,0 +1,493 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import org.apache.log4j.Logger;
+
+/**
+ * Встроенный HTTP-сервис для поиска, изменения данных и получения отчётов другими программами.
+ * Работает поверх тех же моделей и хранилищ, что и окно программы.
+ * <p>
+ * Чтение не блокирует изменения: после каждого изменения в потоке-владельце данных публикуется
+ * снимок хранилища, и запросы читают последний снимок. Поиск использует триграммный индекс модели,
+ * если модель не новее снимка, иначе просматривает снимок. Изменения выполняются
+ * в потоке-владельце (EDT в окне программы). Удаление требует версию данных, по которой получен
+ * номер строки, и отклоняется с кодом 409, если данные успели измениться.
+ * <pre>
+ * GET    /api/teachers?column=name&amp;q=текст[&amp;prefix=true][&amp;limit=100]   поиск (так же /api/students)
+ * POST   /api/teachers   name=…&amp;subject=…&amp;classes=…                      добавление
+ * DELETE /api/teachers?row=N&amp;version=V                                     удаление
+ * GET    /api/report?format=pdf|html|csv|xlsx                                отчёт lab_10.jrxml
+ * </pre>
+ */
+class SchoolHttpServer {
+    private static final Logger log = Logger.getLogger(SchoolHttpServer.class);
+
+    static final String PORT_PROPERTY = "org.example.http.port";
+    /** Свойство JDK, включающее TCP_NODELAY для соединений встроенного HTTP-сервера. */
+    static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    /** Наибольшее число строк в ответе поиска. */
+    static final int MAX_LIMIT = 10_000;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    /** Сколько ждать потока-владельца данных при изменении, с. */
+    private static final int OWNER_TIMEOUT = 10;
+
+    private static final String[][] COLUMNS = {
+            XmlStreamSaver.TEACHER_ATTRIBUTES, XmlStreamSaver.STUDENT_ATTRIBUTES};
+
+    /**
+     * Получает уведомления об изменениях, сделанных через HTTP (например, для журнала).
+     * Вызывается в потоке-владельце данных.
+     */
+    interface MutationListener {
+        void added(int table, String[] values);
+
+        void deleted(int table, int[] rows);
+    }
+
+    private final RecordTableModel[] models;
+    private final java.util.concurrent.Executor owner;
+    private final MutationListener mutationListener;
+    private final ReportTemplateCache templateCache;
+    private final ReportResultCache resultCache;
+    private final String templatePath;
+    private final java.util.concurrent.Semaphore reportPermits;
+    private final AtomicReferenceArray<RecordSnapshot> published = new AtomicReferenceArray<>(2);
+    private com.sun.net.httpserver.HttpServer server;
+    private ThreadPoolExecutor workers;
+
+    /**
+     * @param teachers       Модель учителей.
+     * @param students       Модель учеников.
+     * @param owner          Поток, в котором изменяются модели (для окна программы — EDT).
+     * @param mutationListener Слушатель изменений или null.
+     * @param templateCache  Кэш скомпилированных шаблонов.
+     * @param resultCache    Кэш готовых отчётов.
+     * @param templatePath   Путь к JRXML-шаблону отчёта.
+     */
+    SchoolHttpServer(RecordTableModel teachers, RecordTableModel students, java.util.concurrent.Executor owner,
+                     MutationListener mutationListener, ReportTemplateCache templateCache,
+                     ReportResultCache resultCache, String templatePath) {
+        this.models = new RecordTableModel[]{teachers, students};
+        this.owner = owner;
+        this.mutationListener = mutationListener;
+        this.templateCache = templateCache;
+        this.resultCache = resultCache;
+        this.templatePath = templatePath;
+        this.reportPermits = new java.util.concurrent.Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Запускает сервер на локальном интерфейсе.
+     *
+     * @param port Порт (0 — любой свободный).
+     * @throws IOException если порт занят.
+     */
+    public void start(int port) throws IOException {
+        // Снимки публикуются при каждом изменении моделей, событие модели приходит в потоке-владельце
+        try {
+            CompletableFuture.runAsync(() -> {
+                for (int table = 0; table < models.length; table++) {
+                    int t = table;
+                    publish(t);
+                    models[t].addTableModelListener(e -> publish(t));
+                }
+            }, owner).get(OWNER_TIMEOUT, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IOException("Не удалось подключиться к данным: " + e.getMessage(), e);
+        }
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Очередь ограничена: при перегрузке запрос выполняет поток приёма соединений, замедляя приём новых
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(1024), r -> {
+            Thread thread = new Thread(r, "HttpWorker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        workers.allowCoreThreadTimeOut(true);
+
+        // Заголовки и тело ответа уходят в сокет разными записями: без TCP_NODELAY тело ждёт
+        // отложенного подтверждения заголовков клиентом, около 40 мс на каждый запрос.
+        // Свойство читается при создании первого сервера в процессе
+        if (System.getProperty(NODELAY_PROPERTY) == null) {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        server = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), port), 256);
+        server.createContext("/api/teachers", exchange -> handle(exchange, () -> records(exchange, 0)));
+        server.createContext("/api/students", exchange -> handle(exchange, () -> records(exchange, 1)));
+        server.createContext("/api/report", exchange -> handle(exchange, () -> report(exchange)));
+        server.setExecutor(workers);
+        server.start();
+        log.info("HTTP-сервис запущен: http://" + server.getAddress().getHostString() + ":" + getPort() + "/api/");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            workers.shutdownNow();
+            log.info("HTTP-сервис остановлен");
+        }
+    }
+
+    private void publish(int table) {
+        published.set(table, models[table].getStore().snapshot());
+    }
+
+    /**
+     * Ошибка запроса с HTTP-кодом ответа.
+     */
+    private static class HttpError extends Exception {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Handler {
+        void run() throws Exception;
+    }
+
+    private void handle(com.sun.net.httpserver.HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            handler.run();
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (Exception e) {
+            log.error("Ошибка HTTP-запроса " + exchange.getRequestURI() + ": " + e.getMessage(), e);
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void records(com.sun.net.httpserver.HttpExchange exchange, int table) throws Exception {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                search(exchange, table, params);
+                break;
+            case "POST":
+                add(exchange, table, parseQuery(readBody(exchange)));
+                break;
+            case "DELETE":
+                delete(exchange, table, params);
+                break;
+            default:
+                throw new HttpError(405, "Метод не поддерживается: " + exchange.getRequestMethod());
+        }
+    }
+
+    private void search(com.sun.net.httpserver.HttpExchange exchange, int table, Map<String, String> params) throws Exception {
+        RecordSnapshot snapshot = published.get(table);
+        String query = params.getOrDefault("q", "");
+        boolean prefix = Boolean.parseBoolean(params.get("prefix"));
+        int limit = Math.min(MAX_LIMIT, parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT)), "limit"));
+        BitSet rows;
+        if (query.isEmpty()) {
+            rows = new BitSet(snapshot.size());
+            rows.set(0, snapshot.size());
+        } else {
+            rows = find(table, column(table, params.getOrDefault("column", "name")), query, prefix, snapshot);
+        }
+
+        StringBuilder body = new StringBuilder(256);
+        body.append("{\"version\":").append(snapshot.getVersion())
+                .append(",\"total\":").append(rows.cardinality()).append(",\"rows\":[");
+        int written = 0;
+        for (int row = rows.nextSetBit(0); row >= 0 && written < limit; row = rows.nextSetBit(row + 1), written++) {
+            if (written > 0) {
+                body.append(',');
+            }
+            body.append("{\"row\":").append(row);
+            for (int c = 0; c < COLUMNS[table].length; c++) {
+                body.append(",\"").append(COLUMNS[table][c]).append("\":").append(json(snapshot.get(row, c)));
+            }
+            body.append('}');
+        }
+        body.append("]}");
+        sendText(exchange, 200, body.toString());
+    }
+
+    /**
+     * Ищет строки снимка по индексу модели; если модель уже новее снимка, просматривает снимок.
+     */
+    private BitSet find(int table, int column, String query, boolean prefix, RecordSnapshot snapshot) {
+        BitSet found = models[table].find(snapshot, column, query, prefix);
+        if (found != null) {
+            return found;
+        }
+        BitSet rows = new BitSet(snapshot.size());
+        for (int row = 0; row < snapshot.size(); row++) {
+            if (TrigramIndex.matches(snapshot.get(row, column), query, prefix)) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private void add(com.sun.net.httpserver.HttpExchange exchange, int table, Map<String, String> form) throws Exception {
+        String[] values = new String[COLUMNS[table].length];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = form.getOrDefault(COLUMNS[table][c], "").trim();
+            if (values[c].isEmpty()) {
+                throw new HttpError(400, "Все поля должны быть заполнены: " + String.join(", ", COLUMNS[table]));
+            }
+        }
+        long[] result = onOwner(() -> {
+            RecordTableModel model = models[table];
+            model.addRow(values);
+            if (mutationListener != null) {
+                mutationListener.added(table, values);
+            }
+            return new long[]{model.getRowCount() - 1, model.getModCount()};
+        });
+        if (log.isDebugEnabled()) {
+            log.debug("HTTP: добавлена запись " + values[0]);
+        }
+        sendText(exchange, 201, "{\"row\":" + result[0] + ",\"version\":" + result[1] + "}");
+    }
+
+    private void delete(com.sun.net.httpserver.HttpExchange exchange, int table, Map<String, String> params) throws Exception {
+        int row = parseInt(params.get("row"), "row");
+        long version = parseLong(params.get("version"), "version");
+        long[] result = onOwner(() -> {
+            RecordTableModel model = models[table];
+            if (model.getModCount() != version) {
+                return null;
+            }
+            if (row < 0 || row >= model.getRowCount()) {
+                return new long[]{-1};
+            }
+            model.removeRows(new int[]{row});
+            if (mutationListener != null) {
+                mutationListener.deleted(table, new int[]{row});
+            }
+            return new long[]{row, model.getModCount()};
+        });
+        if (result == null) {
+            throw new HttpError(409, "Данные изменились после версии " + version + ", повторите поиск");
+        }
+        if (result[0] < 0) {
+            throw new HttpError(404, "Нет строки " + row);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("HTTP: удалена строка " + row);
+        }
+        sendText(exchange, 200, "{\"version\":" + result[1] + "}");
+    }
+
+    private void report(com.sun.net.httpserver.HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            throw new HttpError(405, "Метод не поддерживается: " + exchange.getRequestMethod());
+        }
+        String format = parseQuery(exchange.getRequestURI().getRawQuery()).getOrDefault("format", "pdf").toUpperCase();
+        if (!ReportExporter.FORMATS.contains(format)) {
+            throw new HttpError(400, "Неизвестный формат отчёта: " + format);
+        }
+        // Заполнение отчёта занимает много памяти и процессора, поэтому одновременных отчётов немного
+        if (!reportPermits.tryAcquire(30, TimeUnit.SECONDS)) {
+            throw new HttpError(503, "Сервер занят формированием других отчётов");
+        }
+        try {
+            RecordSnapshot students = published.get(1);
+            JasperReport jasperReport = templateCache.get(templatePath);
+            String templateHash = jasperReport.getProperty(ReportTemplateCache.SOURCE_HASH_PROPERTY);
+            byte[] output = resultCache.getOutput(students.getVersion(), templateHash, format);
+            if (output != null) {
+                send(exchange, 200, contentType(format), output);
+                return;
+            }
+            JasperPrint print = resultCache.getPrint(students.getVersion(), templateHash);
+            JRSwapFileVirtualizer virtualizer = print == null ? ReportVirtualizers.createFor(students.size()) : null;
+            try {
+                if (print == null) {
+                    Map<String, Object> parameters = new HashMap<>();
+                    if (virtualizer != null) {
+                        parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+                    }
+                    print = ReportExporter.fillReport(jasperReport, parameters, new StudentDataSource(students));
+                }
+                if (virtualizer != null) {
+                    // Большой отчёт передаётся клиенту потоково, без копии в памяти
+                    virtualizer.setReadOnly(true);
+                    exchange.getResponseHeaders().set("Content-Type", contentType(format));
+                    exchange.sendResponseHeaders(200, 0);
+                    try (OutputStream body = exchange.getResponseBody()) {
+                        ReportExporter.toStream(print, format, body);
+                    }
+                    return;
+                }
+                resultCache.putPrint(students.getVersion(), templateHash, print);
+                output = ReportExporter.toBytes(print, format);
+                resultCache.putOutput(students.getVersion(), templateHash, format, output);
+                send(exchange, 200, contentType(format), output);
+            } finally {
+                if (virtualizer != null) {
+                    virtualizer.cleanup();
+                }
+            }
+        } finally {
+            reportPermits.release();
+        }
+    }
+
+    private interface OwnerTask<T> {
+        T call();
+    }
+
+    /**
+     * Выполняет изменение в потоке-владельце данных и ждёт результата.
+     */
+    private <T> T onOwner(OwnerTask<T> task) throws Exception {
+        try {
+            return CompletableFuture.supplyAsync(task::call, owner).get(OWNER_TIMEOUT, TimeUnit.SECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new HttpError(503, "Данные заняты, повторите запрос");
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static int column(int table, String name) throws HttpError {
+        int column = Arrays.asList(COLUMNS[table]).indexOf(name);
+        if (column < 0) {
+            throw new HttpError(400, "Неизвестный столбец: " + name);
+        }
+        return column;
+    }
+
+    private static String contentType(String format) {
+        switch (format) {
+            case "PDF":
+                return "application/pdf";
+            case "HTML":
+                return "text/html; charset=UTF-8";
+            case "CSV":
+                return "text/csv; charset=UTF-8";
+            default:
+                return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        }
+    }
+
+    private static int parseInt(String value, String name) throws HttpError {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Параметр " + name + " должен быть целым числом");
+        }
+    }
+
+    private static long parseLong(String value, String name) throws HttpError {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Параметр " + name + " должен быть целым числом");
+        }
+    }
+
+    private static String readBody(com.sun.net.httpserver.HttpExchange exchange) throws IOException, HttpError {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            throw new HttpError(413, "Слишком большой запрос");
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Разбирает строку вида a=1&amp;b=2 (query или тело формы).
+     */
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(java.net.URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    java.net.URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Строковый литерал JSON.
+     */
+    static String json(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        result.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        result.append(ch);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static void sendError(com.sun.net.httpserver.HttpExchange exchange, int status, String message) {
+        try {
+            sendText(exchange, status, "{\"error\":" + json(message) + "}");
+        } catch (IOException e) {
+            // Ответ уже начат или клиент отключился — сообщить об ошибке нельзя
+            log.debug("Не удалось отправить ошибку HTTP " + status + ": " + e.getMessage());
+        }
+    }
+
+    private static void sendText(com.sun.net.httpserver.HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=UTF-8", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(com.sun.net.httpserver.HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example;
+
+/**
+ * Этап конвейера обработки данных.
+ */
+enum Stage {
+    LOAD("Загрузка данных", null),
+    SAVE("Сохранение данных", LOAD),
+    REPORT("Генерация отчёта", SAVE);
+
+    private final String title;
+    private final Stage dependsOn;
+
+    Stage(String title, Stage dependsOn) {
+        this.title = title;
+        this.dependsOn = dependsOn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Этап, после последнего запуска которого выполняется данный, или null.
+     */
+    public Stage getDependsOn() {
+        return dependsOn;
+    }
+}
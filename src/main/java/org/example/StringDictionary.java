@@ -0,0 +1,51 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Словарь строк: сопоставляет каждому различному значению целочисленный код.
+ * Используется для столбцов с малым числом различных значений (класс, предмет).
+ * Словарь только пополняется, поэтому коды, выданные до снимка хранилища,
+ * можно читать из другого потока, пока EDT добавляет новые значения.
+ */
+class StringDictionary {
+    private volatile String[] values = new String[16];
+    private volatile int size;
+    private final HashMap<String, Integer> codes = new HashMap<>();
+
+    /**
+     * Возвращает код значения, добавляя значение в словарь при первом появлении.
+     */
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = size;
+            String[] array = values;
+            if (code == array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+            }
+            array[code] = value;
+            values = array;
+            size = code + 1;
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Возвращает код значения или -1, если значения нет в словаре.
+     */
+    public int lookup(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    public String decode(int code) {
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+}
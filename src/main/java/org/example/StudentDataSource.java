@@ -0,0 +1,67 @@
+package org.example;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+
+/**
+ * Источник данных отчёта, перебирающий учеников прямо из хранилища в памяти.
+ * Предоставляет поля name, class и performance, которые ожидает шаблон lab_10.jrxml,
+ * без промежуточного XML-файла и XPath.
+ */
+class StudentDataSource implements JRRewindableDataSource {
+    private final RecordSource store;
+    private final int[] rows; // Выбранные записи или null для всех
+    private final int rowCount;
+    private int position = -1;
+    private int row = -1;
+
+    /**
+     * @param store Ученики (обычно снимок хранилища): ФИО, класс, успеваемость.
+     */
+    public StudentDataSource(RecordSource store) {
+        this.store = store;
+        this.rows = null;
+        this.rowCount = store.size();
+    }
+
+    /**
+     * @param store Ученики (обычно снимок хранилища): ФИО, класс, успеваемость.
+     * @param rows  Индексы записей, попадающих в отчёт, в порядке вывода.
+     */
+    public StudentDataSource(RecordSource store, int[] rows) {
+        this.store = store;
+        this.rows = rows;
+        this.rowCount = rows.length;
+    }
+
+    @Override
+    public boolean next() {
+        if (position + 1 >= rowCount) {
+            return false;
+        }
+        position++;
+        row = rows != null ? rows[position] : position;
+        return true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) throws JRException {
+        switch (field.getName()) {
+            case "name":
+                return store.get(row, 0);
+            case "class":
+                return store.get(row, 1);
+            case "performance":
+                return store.get(row, 2);
+            default:
+                throw new JRException("Неизвестное поле отчёта: " + field.getName());
+        }
+    }
+
+    @Override
+    public void moveFirst() {
+        position = -1;
+        row = -1;
+    }
+}
@@ -0,0 +1,153 @@
+package org.example;
+
+import java.util.EnumMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Конвейер этапов загрузка → сохранение → отчёт на общем ограниченном пуле потоков.
+ * Каждый запуск этапа начинается после завершения последнего запуска этапа, от которого
+ * он зависит; повторный запуск этапа, пока предыдущий не завершён, не создаётся.
+ * Запуск можно отменить: ожидающий запуск не начнётся, выполняющийся будет прерван.
+ */
+class TaskPipeline {
+    private static final Logger log = Logger.getLogger(TaskPipeline.class);
+
+    private final ThreadPoolExecutor executor;
+    private final EnumMap<Stage, StageRun> runs = new EnumMap<>(Stage.class);
+    private final EnumMap<Stage, Boolean> completed = new EnumMap<>(Stage.class);
+
+    /**
+     * Один запуск этапа.
+     */
+    private static class StageRun {
+        volatile CompletableFuture<Void> future;
+        volatile Thread runner;
+        volatile boolean cancelled;
+    }
+
+    public TaskPipeline() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Stage.values().length;
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "PipelineThread-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Потоки не держатся, пока конвейер простаивает
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Запускает этап после завершения этапа, от которого он зависит.
+     *
+     * @param stage Этап.
+     * @param task  Действие этапа.
+     * @return Future запуска; если этап уже выполняется — Future текущего запуска.
+     */
+    public synchronized CompletableFuture<Void> submit(Stage stage, Runnable task) {
+        StageRun current = runs.get(stage);
+        if (current != null && !current.future.isDone()) {
+            log.warn(stage.getTitle() + ": предыдущий запуск ещё не завершён, новый запуск не создан");
+            return current.future;
+        }
+
+        StageRun dependency = stage.getDependsOn() != null ? runs.get(stage.getDependsOn()) : null;
+        CompletableFuture<?> before = dependency != null ? dependency.future : CompletableFuture.completedFuture(null);
+        if (dependency != null && !before.isDone()) {
+            log.info(stage.getTitle() + ": ожидание этапа \"" + stage.getDependsOn().getTitle() + "\"");
+        }
+
+        StageRun run = new StageRun();
+        // Этап выполняется после зависимости независимо от того, как она завершилась
+        run.future = before.handle((result, error) -> null)
+                .thenRunAsync(() -> execute(stage, run, task), executor);
+        runs.put(stage, run);
+        return run.future;
+    }
+
+    /**
+     * Отменяет текущий запуск этапа.
+     */
+    public synchronized void cancel(Stage stage) {
+        StageRun run = runs.get(stage);
+        if (run == null || run.future.isDone()) {
+            return;
+        }
+        run.cancelled = true;
+        Thread runner = run.runner;
+        if (runner != null) {
+            runner.interrupt();
+        } else {
+            run.future.cancel(false);
+        }
+    }
+
+    /**
+     * @return true, если этап выполняется или ожидает выполнения.
+     */
+    public synchronized boolean isRunning(Stage stage) {
+        StageRun run = runs.get(stage);
+        return run != null && !run.future.isDone();
+    }
+
+    /**
+     * @return true, если последний не отменённый запуск этапа завершился без ошибок.
+     */
+    public synchronized boolean hasCompleted(Stage stage) {
+        return completed.getOrDefault(stage, false);
+    }
+
+    /**
+     * Останавливает пул потоков, прерывая выполняющиеся этапы.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Выполняет запуск этапа в потоке пула.
+     * Задача сообщает об отмене через {@link CancellationException} — такой запуск не меняет
+     * признак {@link #hasCompleted}; любое другое исключение сбрасывает его.
+     */
+    private void execute(Stage stage, StageRun run, Runnable task) {
+        // Передача потока и снятие прерывания выполняются под тем же монитором, что и cancel(),
+        // иначе прерывание может прийти уже следующей задаче этого потока
+        synchronized (this) {
+            if (run.cancelled) {
+                throw new CancellationException(stage.getTitle() + ": отменено до начала");
+            }
+            run.runner = Thread.currentThread();
+        }
+        log.info(Thread.currentThread().getName() + ": " + stage.getTitle() + " — начало.");
+        try {
+            task.run();
+            synchronized (this) {
+                completed.put(stage, true);
+            }
+            log.info(Thread.currentThread().getName() + ": " + stage.getTitle() + " — завершено.");
+        } catch (CancellationException e) {
+            log.info(Thread.currentThread().getName() + ": " + stage.getTitle() + " — отменено: " + e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                completed.put(stage, false);
+            }
+            log.error(Thread.currentThread().getName() + ": " + stage.getTitle() + " — ошибка: " + e.getMessage(), e);
+            throw e;
+        } finally {
+            synchronized (this) {
+                run.runner = null;
+                // Сбрасываем флаг прерывания, чтобы он не достался следующей задаче пула
+                Thread.interrupted();
+            }
+        }
+    }
+}
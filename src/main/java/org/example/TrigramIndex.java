@@ -0,0 +1,339 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Триграммный инвертированный индекс по столбцам хранилища.
+ * Значение (в нижнем регистре) дополняется с обеих сторон граничным символом, и для каждой
+ * его триграммы хранится отсортированный список строк, в которых она встречается.
+ * Длинные запросы пересекают списки своих триграмм и проверяют только оставшихся кандидатов,
+ * короткие (1–2 символа) объединяют списки триграмм, содержащих запрос.
+ * Регулярные выражения и полный перебор строк не используются.
+ * <p>
+ * Списки хранят «физические» номера строк, присвоенные при добавлении. Удалённые строки
+ * не вычищаются из списков сразу, а запоминаются в отсортированном массиве; номер строки хранилища
+ * получается вычитанием числа удалённых строк перед ней. Поэтому удаление стоит O(k log d)
+ * для k строк при d накопленных удалений, а не проход по всем спискам. Списки уплотняются
+ * одним проходом, когда удалений накапливается {@value #COMPACT_MIN_REMOVED} и не меньше
+ * 1/16 проиндексированных строк.
+ */
+class TrigramIndex {
+    /** Граничный символ в начале и в конце значения. */
+    private static final char BOUNDARY = '\u0000';
+    /** Наименьшее число накопленных удалений, при котором списки уплотняются. */
+    static final int COMPACT_MIN_REMOVED = 4096;
+
+    private final LongPostingMap[] postings;
+    private int[] removed = new int[0]; // Физические номера удалённых строк по возрастанию
+    private int physicalSize;           // Число физических номеров, включая удалённые
+
+    public TrigramIndex(int columnCount) {
+        postings = new LongPostingMap[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            postings[c] = new LongPostingMap();
+        }
+    }
+
+    /**
+     * Индексирует строки [from, to), добавленные в конец хранилища.
+     */
+    public void rowsAppended(RecordStore store, int from, int to) {
+        // Все удалённые строки стоят перед добавленными
+        int offset = removed.length;
+        for (int c = 0; c < postings.length; c++) {
+            LongPostingMap columnPostings = postings[c];
+            for (int row = from; row < to; row++) {
+                String value = store.get(row, c);
+                int count = trigramCount(value);
+                for (int i = 0; i < count; i++) {
+                    IntList rows = columnPostings.getOrCreate(trigram(value, i));
+                    // Строки добавляются по возрастанию, повтор триграммы в значении даёт ту же строку
+                    if (rows.last() != row + offset) {
+                        rows.add(row + offset);
+                    }
+                }
+            }
+        }
+        physicalSize = Math.max(physicalSize, to + offset);
+    }
+
+    /**
+     * Отмечает строки удалёнными; номера оставшихся строк сдвигаются без прохода по спискам.
+     *
+     * @param removedRows Отсортированные по возрастанию номера удалённых строк.
+     */
+    public void rowsRemoved(int[] removedRows) {
+        if (removedRows.length == 0) {
+            return;
+        }
+        int[] physicalRows = new int[removedRows.length];
+        for (int i = 0; i < removedRows.length; i++) {
+            physicalRows[i] = physical(removedRows[i]);
+        }
+        // Слияние двух отсортированных массивов
+        int[] merged = new int[removed.length + physicalRows.length];
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = b >= physicalRows.length || (a < removed.length && removed[a] < physicalRows[b])
+                    ? removed[a++] : physicalRows[b++];
+        }
+        removed = merged;
+        if (removed.length >= Math.max(COMPACT_MIN_REMOVED, physicalSize >>> 4)) {
+            compact();
+        }
+    }
+
+    /**
+     * Обновляет индекс после изменения значения ячейки.
+     */
+    public void valueChanged(int row, int column, String oldValue, String newValue) {
+        int physicalRow = physical(row);
+        LongPostingMap columnPostings = postings[column];
+        int oldCount = trigramCount(oldValue);
+        for (int i = 0; i < oldCount; i++) {
+            IntList rows = columnPostings.get(trigram(oldValue, i));
+            if (rows != null) {
+                rows.removeSorted(physicalRow);
+            }
+        }
+        int newCount = trigramCount(newValue);
+        for (int i = 0; i < newCount; i++) {
+            columnPostings.getOrCreate(trigram(newValue, i)).insertSorted(physicalRow);
+        }
+    }
+
+    public void clear() {
+        for (LongPostingMap columnPostings : postings) {
+            columnPostings.clear();
+        }
+        removed = new int[0];
+        physicalSize = 0;
+    }
+
+    /**
+     * Число удалённых строк, ещё не вычищенных из списков.
+     */
+    int pendingRemovals() {
+        return removed.length;
+    }
+
+    /**
+     * Вычищает удалённые строки из всех списков и сдвигает номера оставшихся.
+     */
+    private void compact() {
+        for (LongPostingMap columnPostings : postings) {
+            for (int i = 0; i < columnPostings.capacity(); i++) {
+                IntList rows = columnPostings.valueAt(i);
+                if (rows != null) {
+                    rows.compact(removed);
+                }
+            }
+            columnPostings.removeEmpty();
+        }
+        physicalSize -= removed.length;
+        removed = new int[0];
+    }
+
+    /**
+     * Физический номер строки хранилища: row плюс число удалённых строк, перед которыми
+     * живых строк не больше row.
+     */
+    private int physical(int row) {
+        int low = 0;
+        int high = removed.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (removed[mid] - mid <= row) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return row + low;
+    }
+
+    /**
+     * Ищет строки, в которых значение столбца содержит запрос (или начинается с него).
+     *
+     * @param store  Данные, по которым построен индекс: хранилище или его снимок той же версии.
+     *               По ним проверяются кандидаты.
+     * @param column Индекс столбца.
+     * @param query  Запрос; регистр не учитывается.
+     * @param prefix true для поиска по префиксу.
+     * @return Множество номеров найденных строк.
+     */
+    public BitSet find(RecordSource store, int column, String query, boolean prefix) {
+        BitSet result = new BitSet(store.size());
+        if (query.isEmpty()) {
+            result.set(0, store.size());
+            return result;
+        }
+        if (query.length() < 3) {
+            findShort(column, query, prefix, result);
+            return result;
+        }
+
+        // Списки триграмм запроса (для префикса — вместе с граничной), от самого короткого
+        LongPostingMap columnPostings = postings[column];
+        List<IntList> lists = new ArrayList<>();
+        if (prefix) {
+            IntList rows = columnPostings.get(key(BOUNDARY, lower(query, 0), lower(query, 1)));
+            if (rows == null) {
+                return result;
+            }
+            lists.add(rows);
+        }
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            IntList rows = columnPostings.get(key(lower(query, i), lower(query, i + 1), lower(query, i + 2)));
+            if (rows == null || rows.isEmpty()) {
+                return result;
+            }
+            lists.add(rows);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        // Если триграмма всего одна, её список и есть ответ
+        boolean exact = lists.size() == 1;
+        IntList candidates = lists.get(0);
+        int[] cursors = new int[lists.size()]; // Кандидаты идут по возрастанию, поэтому позиции в списках только растут
+        int dead = 0; // Удалённых строк перед кандидатом
+        for (int i = 0; i < candidates.size(); i++) {
+            checkCancelled(i);
+            int physicalRow = candidates.get(i);
+            while (dead < removed.length && removed[dead] < physicalRow) {
+                dead++;
+            }
+            if (dead < removed.length && removed[dead] == physicalRow) {
+                continue;
+            }
+            boolean inAll = true;
+            for (int l = 1; l < lists.size() && inAll; l++) {
+                IntList rows = lists.get(l);
+                cursors[l] = rows.seek(cursors[l], physicalRow);
+                inAll = cursors[l] < rows.size() && rows.get(cursors[l]) == physicalRow;
+            }
+            int row = physicalRow - dead;
+            if (inAll && (exact || matches(store.get(row, column), query, prefix))) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Поиск по запросу из одного-двух символов: объединяет списки всех триграмм столбца,
+     * содержащих запрос (для префикса — стоящий сразу после граничного символа).
+     */
+    private void findShort(int column, String query, boolean prefix, BitSet result) {
+        char q0 = lower(query, 0);
+        char q1 = query.length() > 1 ? lower(query, 1) : 0;
+        boolean single = query.length() == 1;
+        LongPostingMap columnPostings = postings[column];
+        BitSet physicalRows = removed.length == 0 ? result : new BitSet(physicalSize);
+        for (int i = 0; i < columnPostings.capacity(); i++) {
+            checkCancelled(i);
+            IntList rows = columnPostings.valueAt(i);
+            if (rows == null || rows.isEmpty()) {
+                continue;
+            }
+            long key = columnPostings.keyAt(i);
+            char c0 = (char) (key >>> 32);
+            char c1 = (char) (key >>> 16);
+            char c2 = (char) key;
+            boolean hit;
+            if (prefix) {
+                hit = c0 == BOUNDARY && c1 == q0 && (single || c2 == q1);
+            } else if (single) {
+                hit = c0 == q0 || c1 == q0 || c2 == q0;
+            } else {
+                hit = (c0 == q0 && c1 == q1) || (c1 == q0 && c2 == q1);
+            }
+            if (hit) {
+                for (int r = 0; r < rows.size(); r++) {
+                    physicalRows.set(rows.get(r));
+                }
+            }
+        }
+        if (physicalRows != result) {
+            int dead = 0;
+            for (int row = physicalRows.nextSetBit(0); row >= 0; row = physicalRows.nextSetBit(row + 1)) {
+                while (dead < removed.length && removed[dead] < row) {
+                    dead++;
+                }
+                if (dead == removed.length || removed[dead] != row) {
+                    result.set(row - dead);
+                }
+            }
+        }
+    }
+
+    /**
+     * Прерывает поиск, если поток был прерван (например, более новым запросом).
+     */
+    private static void checkCancelled(int iteration) {
+        if ((iteration & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Поиск отменён");
+        }
+    }
+
+    /**
+     * Проверяет вхождение запроса в значение без учёта регистра. Символы приводятся
+     * к нижнему регистру так же, как в ключах триграмм; остаток запроса сравнивается
+     * только там, где совпал первый символ.
+     */
+    static boolean matches(String value, String query, boolean prefix) {
+        int length = query.length();
+        if (length == 0) {
+            return true;
+        }
+        int last = prefix ? Math.min(0, value.length() - length) : value.length() - length;
+        char first = lower(query, 0);
+        for (int i = 0; i <= last; i++) {
+            if (lower(value, i) == first && matchesAt(value, i, query)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAt(String value, int offset, String query) {
+        for (int i = 1; i < query.length(); i++) {
+            char v = value.charAt(offset + i);
+            char q = query.charAt(i);
+            if (v != q && Character.toLowerCase(v) != Character.toLowerCase(q)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Количество триграмм значения, дополненного граничными символами.
+     */
+    private static int trigramCount(String value) {
+        return value.isEmpty() ? 0 : value.length();
+    }
+
+    /**
+     * Ключ i-й триграммы значения, дополненного граничными символами с обеих сторон.
+     */
+    private static long trigram(String value, int i) {
+        int n = value.length();
+        char c0 = i == 0 ? BOUNDARY : lower(value, i - 1);
+        char c1 = lower(value, i);
+        char c2 = i + 1 < n ? lower(value, i + 1) : BOUNDARY;
+        return key(c0, c1, c2);
+    }
+
+    private static char lower(String value, int i) {
+        return Character.toLowerCase(value.charAt(i));
+    }
+
+    private static long key(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+}
@@ -0,0 +1,13 @@
+package org.example;
+
+import java.io.IOException;
+
+/**
+ * Исключение, выбрасываемое если файл нельзя разобрать параллельно
+ * (другая кодировка, DOCTYPE, комментарии или CDATA).
+ */
+class UnsupportedLayoutException extends IOException {
+    public UnsupportedLayoutException(String message) {
+        super(message);
+    }
+}
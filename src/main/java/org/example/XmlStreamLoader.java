@@ -0,0 +1,129 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Потоковый загрузчик XML-файла школы на основе StAX.
+ * Читает атрибуты элементов teacher и student за один проход с постоянным расходом памяти,
+ * сообщает о прогрессе и может быть отменён во время чтения.
+ */
+class XmlStreamLoader {
+    private static final Logger log = Logger.getLogger(XmlStreamLoader.class);
+
+    /** Через сколько записей сообщать о прогрессе. */
+    static final int PROGRESS_STEP = 10_000;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    /**
+     * Приёмник прочитанных записей.
+     */
+    interface RecordSink {
+        void teacher(String[] teacher);
+
+        void student(String[] student);
+    }
+
+    /**
+     * Слушатель прогресса загрузки.
+     */
+    interface ProgressListener {
+        void onProgress(long bytesRead, long totalBytes, int teachers, int students);
+    }
+
+    /**
+     * Запрашивает отмену загрузки. Чтение прекращается на ближайшем элементе.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * @return true, если была запрошена отмена загрузки.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Читает файл за один проход и передаёт записи приёмнику.
+     *
+     * @param xmlFile  XML-файл школы.
+     * @param sink     Приёмник записей учителей и учеников.
+     * @param listener Слушатель прогресса (может быть null).
+     * @throws IOException             при ошибке чтения файла.
+     * @throws XMLStreamException      при ошибке разбора XML.
+     * @throws LoadCancelledException  если загрузка была отменена.
+     */
+    public void load(File xmlFile, RecordSink sink, ProgressListener listener)
+            throws IOException, XMLStreamException, LoadCancelledException {
+        long totalBytes = xmlFile.length();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (HotPathMetrics.Sample sample = HotPathMetrics.LOAD.start();
+             CountingInputStream in = new CountingInputStream(new BufferedInputStream(new FileInputStream(xmlFile), 1 << 16))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            int teachers = 0;
+            int students = 0;
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String tag = reader.getLocalName();
+                    if ("teacher".equals(tag)) {
+                        sink.teacher(new String[]{
+                                attribute(reader, "name"),
+                                attribute(reader, "subject"),
+                                attribute(reader, "classes")});
+                        teachers++;
+                    } else if ("student".equals(tag)) {
+                        sink.student(new String[]{
+                                attribute(reader, "name"),
+                                attribute(reader, "class"),
+                                attribute(reader, "performance")});
+                        students++;
+                    } else {
+                        continue;
+                    }
+
+                    if (cancelled.get()) {
+                        throw new LoadCancelledException("Загрузка прервана после " + (teachers + students) + " записей.");
+                    }
+                    if (listener != null && (teachers + students) % PROGRESS_STEP == 0) {
+                        listener.onProgress(in.getCount(), totalBytes, teachers, students);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if (listener != null) {
+                listener.onProgress(totalBytes, totalBytes, teachers, students);
+            }
+            sample.succeeded(teachers + students);
+            log.debug("Потоковая загрузка завершена: учителей " + teachers + ", учеников " + students);
+        }
+    }
+
+    /**
+     * Возвращает значение атрибута или пустую строку, если атрибут отсутствует
+     * (так же, как Element.getAttribute в DOM).
+     */
+    private String attribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        return value != null ? value : "";
+    }
+}
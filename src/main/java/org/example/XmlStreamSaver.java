@@ -0,0 +1,105 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Потоковая запись данных школы в XML через StAX.
+ * Формирует ту же схему {@code <school><teachers>…</teachers><students>…</students></school>},
+ * что и при загрузке, с постоянным расходом памяти. Форматирование с отступами необязательно.
+ */
+class XmlStreamSaver {
+    /** Имена атрибутов элемента teacher в порядке столбцов хранилища. */
+    static final String[] TEACHER_ATTRIBUTES = {"name", "subject", "classes"};
+    /** Имена атрибутов элемента student в порядке столбцов хранилища. */
+    static final String[] STUDENT_ATTRIBUTES = {"name", "class", "performance"};
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String INDENT = "    ";
+
+    private final boolean prettyPrint;
+
+    /**
+     * @param prettyPrint true, чтобы записывать каждый элемент с новой строки с отступом.
+     */
+    public XmlStreamSaver(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
+    /**
+     * Записывает учителей и учеников в файл, заменяя его содержимое.
+     *
+     * @param xmlFile  Файл для записи.
+     * @param teachers Хранилище учителей.
+     * @param students Хранилище учеников.
+     * @throws IOException        при ошибке записи файла.
+     * @throws XMLStreamException при ошибке формирования XML.
+     */
+    public void save(File xmlFile, RecordSource teachers, RecordSource students) throws IOException, XMLStreamException {
+        try (HotPathMetrics.Sample sample = HotPathMetrics.SAVE.start();
+             FileChannel channel = FileChannel.open(xmlFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+            write(out, teachers, students);
+            sample.succeeded((long) teachers.size() + students.size());
+        }
+    }
+
+    /**
+     * Записывает учителей и учеников в поток. Поток не закрывается.
+     */
+    public void write(OutputStream out, RecordSource teachers, RecordSource students) throws XMLStreamException {
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+        try {
+            writer.writeStartDocument("UTF-8", "1.0");
+            newLine(writer, 0);
+            writer.writeStartElement("school");
+            writeSection(writer, "teachers", "teacher", TEACHER_ATTRIBUTES, teachers);
+            writeSection(writer, "students", "student", STUDENT_ATTRIBUTES, students);
+            newLine(writer, 0);
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeSection(XMLStreamWriter writer, String sectionName, String elementName,
+                              String[] attributes, RecordSource store) throws XMLStreamException {
+        newLine(writer, 1);
+        if (store.size() == 0) {
+            writer.writeEmptyElement(sectionName);
+            return;
+        }
+        writer.writeStartElement(sectionName);
+        for (int row = 0; row < store.size(); row++) {
+            newLine(writer, 2);
+            writer.writeEmptyElement(elementName);
+            for (int c = 0; c < attributes.length; c++) {
+                writer.writeAttribute(attributes[c], store.get(row, c));
+            }
+        }
+        newLine(writer, 1);
+        writer.writeEndElement();
+    }
+
+    private void newLine(XMLStreamWriter writer, int depth) throws XMLStreamException {
+        if (!prettyPrint) {
+            return;
+        }
+        writer.writeCharacters("\n");
+        for (int i = 0; i < depth; i++) {
+            writer.writeCharacters(INDENT);
+        }
+    }
+}
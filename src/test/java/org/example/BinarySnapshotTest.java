@@ -0,0 +1,98 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinarySnapshotTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void roundTripKeepsAllRecords() throws Exception {
+        File file = write(30_000);
+        List<String[]> teachers = new ArrayList<>();
+        List<String[]> students = new ArrayList<>();
+        BinarySnapshot.read(file, sink(teachers, students), null, null);
+
+        assertEquals(2, teachers.size());
+        assertArrayEquals(new String[]{"Иванов И. И.", "Математика", "5А, 6Б"}, teachers.get(0));
+        assertEquals(30_000, students.size());
+        assertArrayEquals(student(29_999), students.get(29_999));
+        assertArrayEquals(new String[]{"", "1А", ""}, students.get(0));
+    }
+
+    @Test
+    void corruptedColumnsAreRejected() throws Exception {
+        File file = write(100);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+        IOException e = assertThrows(IOException.class,
+                () -> BinarySnapshot.read(file, sink(new ArrayList<>(), new ArrayList<>()), null, null));
+        assertTrue(e.getMessage().contains("Контрольная сумма"), e.getMessage());
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws Exception {
+        File file = write(100);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        assertThrows(IOException.class,
+                () -> BinarySnapshot.read(file, sink(new ArrayList<>(), new ArrayList<>()), null, null));
+    }
+
+    @Test
+    void readCanBeCancelled() throws Exception {
+        File file = write(30_000);
+        List<String[]> students = new ArrayList<>();
+        assertThrows(LoadCancelledException.class,
+                () -> BinarySnapshot.read(file, sink(new ArrayList<>(), students), null, () -> students.size() > 0));
+        assertTrue(students.size() < 30_000);
+    }
+
+    private File write(int studentCount) throws IOException {
+        RecordStore teachers = RecordStore.forTeachers();
+        teachers.add(new String[]{"Иванов И. И.", "Математика", "5А, 6Б"});
+        teachers.add(new String[]{"Петрова А. С.", "Физика", "9В"});
+        RecordStore students = RecordStore.forStudents();
+        students.add(new String[]{"", "1А", ""});
+        for (int i = 1; i < studentCount; i++) {
+            students.add(student(i));
+        }
+        File file = new File(directory, "school." + BinarySnapshot.EXTENSION);
+        BinarySnapshot.write(file, teachers.snapshot(), students.snapshot());
+        return file;
+    }
+
+    private static String[] student(int i) {
+        return new String[]{"Ученик " + i, (1 + i % 11) + "АБВ".substring(i % 3, i % 3 + 1), String.valueOf(2 + i % 4)};
+    }
+
+    static XmlStreamLoader.RecordSink sink(List<String[]> teachers, List<String[]> students) {
+        return new XmlStreamLoader.RecordSink() {
+            @Override
+            public void teacher(String[] teacher) {
+                teachers.add(teacher);
+            }
+
+            @Override
+            public void student(String[] student) {
+                students.add(student);
+            }
+        };
+    }
+}
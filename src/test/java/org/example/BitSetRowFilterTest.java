@@ -0,0 +1,91 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JTable;
+import javax.swing.table.TableRowSorter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Фильтр найденных строк должен оставаться верным после изменений модели.
+ */
+class BitSetRowFilterTest {
+    private RecordTableModel model;
+    private TableRowSorter<RecordTableModel> sorter;
+
+    @BeforeEach
+    void setUp() {
+        RecordStore store = RecordStore.forStudents();
+        for (String name : new String[]{"Иванов А", "Beta", "Иванов Б", "Delta"}) {
+            store.add(new String[]{name, "5А", "4"});
+        }
+        model = new RecordTableModel(store, new String[]{"ФИО", "Класс", "Успеваемость"});
+        JTable table = new JTable(model); // Таблица передаёт события модели сортировщику
+        sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+        sorter.setRowFilter(new BitSetRowFilter(model, 0, "иванов", false,
+                model.find(0, "иванов", false), model.getModCount()));
+    }
+
+    @Test
+    void filterShowsMatchingRows() {
+        assertEquals(List.of("Иванов А", "Иванов Б"), visibleNames());
+    }
+
+    @Test
+    void deleteKeepsFilterOnCurrentRows() {
+        model.removeRows(new int[]{0});
+        assertEquals(List.of("Иванов Б"), visibleNames());
+    }
+
+    @Test
+    void scatteredDeleteKeepsFilterOnCurrentRows() {
+        model.removeRows(new int[]{3, 0});
+        assertEquals(List.of("Иванов Б"), visibleNames());
+    }
+
+    @Test
+    void bulkDeleteShiftsFilterWithoutSearchingAgain() {
+        BitSetRowFilter filter = (BitSetRowFilter) sorter.getRowFilter();
+        long searches = HotPathMetrics.SEARCH.getCount();
+        int[] rows = {1, 2};
+        filter.rowsRemoving(rows);
+        model.removeRows(rows);
+        filter.removalApplied();
+        assertEquals(List.of("Иванов А"), visibleNames());
+        assertEquals(searches, HotPathMetrics.SEARCH.getCount());
+
+        // Следующее удаление по видимой строке попадает в ту же запись
+        int[] next = {sorter.convertRowIndexToModel(0)};
+        filter.rowsRemoving(next);
+        model.removeRows(next);
+        filter.removalApplied();
+        assertEquals(List.of(), visibleNames());
+        assertEquals(List.of("Delta"), List.of(model.getValueAt(0, 0)));
+    }
+
+    @Test
+    void addedMatchingRowBecomesVisible() {
+        model.addRow(new String[]{"Иванов В", "5А", "3"});
+        model.addRow(new String[]{"Gamma", "5А", "3"});
+        assertEquals(List.of("Иванов А", "Иванов Б", "Иванов В"), visibleNames());
+    }
+
+    @Test
+    void clearAndReloadFiltersNewData() {
+        model.clear();
+        model.appendRows(List.of(new String[]{"Петров", "1А", "5"}, new String[]{"Иванова", "1А", "5"}));
+        assertEquals(List.of("Иванова"), visibleNames());
+    }
+
+    private List<String> visibleNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < sorter.getViewRowCount(); i++) {
+            names.add((String) model.getValueAt(sorter.convertRowIndexToModel(i), 0));
+        }
+        return names;
+    }
+}
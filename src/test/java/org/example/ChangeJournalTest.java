@@ -0,0 +1,181 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangeJournalTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void entriesAreReplayedAfterReopen() throws Exception {
+        File base = base("school.xml", "<school/>");
+        String longValue = "Ж".repeat(40_000); // 80 000 байт UTF-8 — больше предела writeUTF
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Иванов", "5А", "4"});
+            journal.delete(ChangeJournal.TEACHERS, new int[]{1, 3});
+            journal.set(ChangeJournal.STUDENTS, 0, 2, longValue);
+        }
+
+        List<ChangeJournal.Entry> entries = reopen(base);
+        assertEquals(3, entries.size());
+        assertEquals(ChangeJournal.ADD, entries.get(0).type);
+        assertArrayEquals(new String[]{"Иванов", "5А", "4"}, entries.get(0).values);
+        assertEquals(ChangeJournal.DELETE, entries.get(1).type);
+        assertArrayEquals(new int[]{1, 3}, entries.get(1).rows);
+        assertEquals(ChangeJournal.SET, entries.get(2).type);
+        assertEquals(2, entries.get(2).column);
+        assertEquals(longValue, entries.get(2).value);
+    }
+
+    @Test
+    void tornTailIsDroppedAndAppendingContinues() throws Exception {
+        File base = base("school.xml", "<school/>");
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Первый", "1А", "5"});
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Второй", "1А", "5"});
+        }
+        // Сбой посреди записи: последняя запись оборвана
+        try (RandomAccessFile raf = new RandomAccessFile(ChangeJournal.journalFor(base), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (ChangeJournal journal = ChangeJournal.open(base)) {
+            List<ChangeJournal.Entry> entries = journal.takeRecovered();
+            assertEquals(1, entries.size());
+            assertEquals("Первый", entries.get(0).values[0]);
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Третий", "1А", "5"});
+        }
+        List<ChangeJournal.Entry> entries = reopen(base);
+        assertEquals(2, entries.size());
+        assertEquals("Третий", entries.get(1).values[0]);
+    }
+
+    @Test
+    void journalOfAnotherBaseVersionIsDiscarded() throws Exception {
+        File base = base("school.xml", "<school/>");
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Иванов", "5А", "4"});
+        }
+        Files.writeString(base.toPath(), "<school></school>");
+        assertTrue(reopen(base).isEmpty());
+    }
+
+    @Test
+    void checkpointKeepsOnlyEntriesAfterThePoint() throws Exception {
+        File base = base("school.xml", "<school/>");
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Сохранённый", "2Б", "3"});
+            long point = journal.position();
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Несохранённый", "2Б", "3"});
+
+            assertTrue(journal.checkpoint(base, point, file -> Files.writeString(file.toPath(), "<school>1</school>")));
+            assertEquals("<school>1</school>", Files.readString(base.toPath()));
+            assertFalse(new File(base.getPath() + ".tmp").exists());
+            // Данные старее контрольной точки не записываются
+            assertFalse(journal.checkpoint(base, 0, file -> Files.writeString(file.toPath(), "<school/>")));
+            journal.set(ChangeJournal.STUDENTS, 0, 0, "После точки");
+        }
+
+        List<ChangeJournal.Entry> entries = reopen(base);
+        assertEquals(2, entries.size());
+        assertEquals("Несохранённый", entries.get(0).values[0]);
+        assertEquals("После точки", entries.get(1).value);
+    }
+
+    @Test
+    void syncWaitsForQueuedEntries() throws Exception {
+        File base = base("school.xml", "<school/>");
+        File journalFile = ChangeJournal.journalFor(base);
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            for (int i = 0; i < 1000; i++) {
+                journal.set(ChangeJournal.STUDENTS, i, 2, Integer.toString(i % 5 + 1));
+            }
+            journal.sync();
+            assertEquals(ChangeJournal.HEADER_SIZE + journal.position(), journalFile.length());
+        }
+        List<ChangeJournal.Entry> entries = reopen(base);
+        assertEquals(1000, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i, entries.get(i).row);
+        }
+    }
+
+    @Test
+    void checkpointWaitsForEntriesQueuedBeforeThePoint() throws Exception {
+        File base = base("school.xml", "<school/>");
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            for (int i = 0; i < 500; i++) {
+                journal.add(ChangeJournal.STUDENTS, new String[]{"Сохранённый " + i, "2Б", "3"});
+            }
+            long point = journal.position();
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Несохранённый", "2Б", "3"});
+            assertTrue(journal.checkpoint(base, point, file -> Files.writeString(file.toPath(), "<school>500</school>")));
+        }
+        List<ChangeJournal.Entry> entries = reopen(base);
+        assertEquals(1, entries.size());
+        assertEquals("Несохранённый", entries.get(0).values[0]);
+    }
+
+    @Test
+    void checkpointToAnotherFileMovesTheJournal() throws Exception {
+        File base = base("school.xml", "<school/>");
+        File copy = new File(directory, "copy.xml");
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            long point = journal.position();
+            journal.add(ChangeJournal.TEACHERS, new String[]{"Петрова", "Физика", "9В"});
+            assertTrue(journal.checkpoint(copy, point, file -> Files.writeString(file.toPath(), "<school>copy</school>")));
+            assertEquals(copy, journal.getBaseFile());
+        }
+        List<ChangeJournal.Entry> entries = reopen(copy);
+        assertEquals(1, entries.size());
+        assertEquals("Петрова", entries.get(0).values[0]);
+    }
+
+    @Test
+    void crashBetweenBaseAndJournalReplacementKeepsTheTail() throws Exception {
+        File base = base("school.xml", "<school/>");
+        File journalFile = ChangeJournal.journalFor(base);
+        byte[] oldJournal;
+        try (ChangeJournal journal = ChangeJournal.create(base)) {
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Сохранённый", "2Б", "3"});
+            long point = journal.position();
+            journal.add(ChangeJournal.STUDENTS, new String[]{"Несохранённый", "2Б", "3"});
+            oldJournal = Files.readAllBytes(journalFile.toPath());
+            journal.checkpoint(base, point, file -> Files.writeString(file.toPath(), "<school>1</school>"));
+        }
+        // Состояние после сбоя: файл данных уже заменён, журнал ещё прежний, новый лежит рядом
+        Files.move(journalFile.toPath(), ChangeJournal.pendingFor(journalFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(journalFile.toPath(), oldJournal);
+
+        List<ChangeJournal.Entry> entries = reopen(base);
+        assertEquals(1, entries.size());
+        assertEquals("Несохранённый", entries.get(0).values[0]);
+        assertFalse(ChangeJournal.pendingFor(journalFile).exists());
+        assertEquals(1, reopen(base).size());
+    }
+
+    private File base(String name, String content) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<ChangeJournal.Entry> reopen(File base) throws IOException {
+        try (ChangeJournal journal = ChangeJournal.open(base)) {
+            return journal.takeRecovered();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintText;
+import org.junit.jupiter.api.Test;
+
+class ClassSummaryReportTest {
+    @Test
+    void detailRowShowsGradedCount() throws Exception {
+        RecordStore students = RecordStore.forStudents();
+        students.add(new String[]{"Иванов", "5A", "4"});
+        students.add(new String[]{"Петров", "5A", ""});
+        students.add(new String[]{"Сидоров", "5A", "3"});
+        students.add(new String[]{"Орлов", "6B", "5"});
+        ClassStatistics statistics = ClassStatistics.of(students.snapshot());
+
+        JasperReport report = JasperCompileManager.compileReport(ClassSummaryDataSource.TEMPLATE);
+        JasperPrint print = ReportExporter.fillReport(report, ClassSummaryDataSource.parameters(statistics.total()),
+                new ClassSummaryDataSource(statistics.summaries()));
+
+        List<String> texts = new ArrayList<>();
+        for (JRPrintElement element : print.getPages().get(0).getElements()) {
+            if (element instanceof JRPrintText) {
+                texts.add(((JRPrintText) element).getFullText());
+            }
+        }
+        // Строка класса: класс, учеников, с оценкой, средний балл
+        int row = texts.indexOf("5A");
+        assertTrue(row >= 0, texts.toString());
+        assertEquals(List.of("5A", "3", "2"), texts.subList(row, row + 3));
+        assertEquals(List.of("6B", "1", "1"), texts.subList(texts.indexOf("6B"), texts.indexOf("6B") + 3));
+    }
+}
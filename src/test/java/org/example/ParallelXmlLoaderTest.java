@@ -0,0 +1,103 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ParallelXmlLoaderTest {
+    private static final int STUDENTS = 120_000;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void parallelLoadMatchesSequentialLoad() throws Exception {
+        File file = write();
+
+        List<String[]> expectedTeachers = new ArrayList<>();
+        List<String[]> expectedStudents = new ArrayList<>();
+        new XmlStreamLoader().load(file, BinarySnapshotTest.sink(expectedTeachers, expectedStudents), null);
+
+        List<String[]> actualTeachers = new ArrayList<>();
+        List<String[]> actualStudents = new ArrayList<>();
+        List<Long> progress = new ArrayList<>();
+        new ParallelXmlLoader().load(file, BinarySnapshotTest.sink(actualTeachers, actualStudents),
+                (bytesRead, totalBytes, teacherCount, studentCount) -> progress.add(bytesRead));
+
+        assertEquals(STUDENTS, expectedStudents.size());
+        assertEquals(expectedTeachers.size(), actualTeachers.size());
+        assertArrayEquals(expectedTeachers.get(0), actualTeachers.get(0));
+        assertEquals(expectedStudents.size(), actualStudents.size());
+        for (int i = 0; i < expectedStudents.size(); i++) {
+            assertArrayEquals(expectedStudents.get(i), actualStudents.get(i), "строка " + i);
+        }
+        assertTrue(progress.size() > 2 * Math.max(1, ForkJoinPool.commonPool().getParallelism()),
+                "частей " + progress.size());
+        assertEquals(file.length(), progress.get(progress.size() - 1));
+    }
+
+    @Test
+    void cancelDuringLastChunkFailsTheLoad() throws Exception {
+        File file = write();
+        AtomicInteger chunks = new AtomicInteger();
+        new ParallelXmlLoader().load(file, BinarySnapshotTest.sink(new ArrayList<>(), new ArrayList<>()),
+                (bytesRead, totalBytes, teacherCount, studentCount) -> chunks.incrementAndGet());
+
+        // Отмена приходит сразу после проверки перед слиянием последней части
+        CancelAfterCheckLoader loader = new CancelAfterCheckLoader();
+        List<String[]> students = new ArrayList<>();
+        AtomicInteger merged = new AtomicInteger();
+        assertThrows(LoadCancelledException.class, () -> loader.load(file,
+                BinarySnapshotTest.sink(new ArrayList<>(), students), (bytesRead, totalBytes, teacherCount, studentCount) -> {
+                    if (merged.incrementAndGet() == chunks.get() - 1) {
+                        loader.arm();
+                    }
+                }));
+        assertTrue(students.size() < STUDENTS, "загружено " + students.size());
+    }
+
+    /**
+     * Загрузчик, отмена которого становится видна после первой проверки потоком слияния:
+     * поток слияния уже прошёл проверку, а последняя часть ещё разбирается или ждёт слияния.
+     */
+    private static class CancelAfterCheckLoader extends ParallelXmlLoader {
+        private final Thread merger = Thread.currentThread();
+        private volatile boolean armed;
+        private final AtomicInteger mergerChecks = new AtomicInteger();
+
+        void arm() {
+            armed = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            if (!armed) {
+                return false;
+            }
+            return Thread.currentThread() != merger || mergerChecks.getAndIncrement() > 0;
+        }
+    }
+
+    private File write() throws Exception {
+        RecordStore teachers = RecordStore.forTeachers();
+        teachers.add(new String[]{"Иванов И. И.", "Математика & физика", "5А, 6Б"});
+        RecordStore students = RecordStore.forStudents();
+        for (int i = 0; i < STUDENTS; i++) {
+            students.add(new String[]{"Ученик \"" + i + "\" <" + (i % 7) + ">", (1 + i % 11) + "А", String.valueOf(i % 11)});
+        }
+        File file = new File(directory, "school.xml");
+        new XmlStreamSaver(true).save(file, teachers.snapshot(), students.snapshot());
+        // Файл должен разбиться на большее число частей, чем помещается в окно
+        assertTrue(file.length() > 4L << 20, "размер " + file.length());
+        return file;
+    }
+}
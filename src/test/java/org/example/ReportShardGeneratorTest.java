@@ -0,0 +1,96 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportShardGeneratorTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void zipEntriesKeepTheNamesTheHtmlWasExportedUnder() throws Exception {
+        JasperReport report = JasperCompileManager.compileReport("lab_10.jrxml");
+        RecordStore students = RecordStore.forStudents();
+        students.add(new String[]{"Иванов", "5A", "4"});
+        students.add(new String[]{"Петров", "6B", "5"});
+        students.add(new String[]{"Сидоров", "5A", "3"});
+        File zipFile = new File(directory, "classes.zip");
+
+        int count = new ReportShardGenerator(report, 2).exportZip(students.snapshot(), "HTML", zipFile);
+
+        Map<String, String> entries = read(zipFile);
+        assertEquals(2, count);
+        assertTrue(entries.containsKey("class_5A.html"), entries.keySet().toString());
+        assertTrue(entries.containsKey("class_6B.html"), entries.keySet().toString());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!entry.getKey().endsWith(".html")) {
+                continue;
+            }
+            assertTrue(entry.getValue().contains(entry.getKey().startsWith("class_5A") ? "Сидоров" : "Петров"));
+            // Относительные ссылки на ресурсы указывают на элементы того же архива
+            Matcher link = Pattern.compile("(?:src|href)=\"([^\"]+_files/[^\"]+)\"").matcher(entry.getValue());
+            int links = 0;
+            while (link.find()) {
+                links++;
+                assertTrue(entries.containsKey(link.group(1)), "нет ресурса " + link.group(1));
+                assertTrue(link.group(1).startsWith(entry.getKey() + "_files/"), link.group(1));
+            }
+            assertTrue(links > 0, "HTML без ссылок на ресурсы");
+        }
+    }
+
+    @Test
+    void classesDifferingOnlyInSpacesShareAShardLikeTheSummary() {
+        RecordStore students = RecordStore.forStudents();
+        students.add(new String[]{"Иванов", "5A", "4"});
+        students.add(new String[]{"Петров", "5A ", "5"});
+        students.add(new String[]{"Сидоров", " 6B", "3"});
+
+        Map<String, int[]> groups = ReportShardGenerator.groupByClass(students.snapshot());
+        assertEquals(List.of("5A", "6B"), new ArrayList<>(groups.keySet()));
+        assertArrayEquals(new int[]{0, 1}, groups.get("5A"));
+        List<String> summaryClasses = new ArrayList<>();
+        for (ClassSummary summary : ClassStatistics.of(students.snapshot()).summaries()) {
+            summaryClasses.add(summary.getClassName());
+        }
+        assertEquals(new ArrayList<>(groups.keySet()), summaryClasses);
+    }
+
+    @Test
+    void fallbackNameDoesNotOverwriteAnotherShard() {
+        // Имя с нулевым символом недопустимо в любой файловой системе и заменяется номером класса
+        List<File> files = ReportShardGenerator.files(directory,
+                List.of("class_\u0000.html", "class_1.html", "class_2.html"), "HTML");
+        assertEquals(3, new HashSet<>(files).size(), files.toString());
+        assertEquals("class_1.html", files.get(1).getName());
+        assertEquals("class_2.html", files.get(2).getName());
+        assertTrue(files.get(0).getName().startsWith("class_1_"), files.get(0).getName());
+    }
+
+    private static Map<String, String> read(File zipFile) throws Exception {
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new java.io.FileInputStream(zipFile))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TaskPipelineTest {
+    private final TaskPipeline pipeline = new TaskPipeline();
+
+    @AfterEach
+    void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void successfulRunMarksStageCompleted() throws Exception {
+        pipeline.submit(Stage.LOAD, () -> { }).get(5, TimeUnit.SECONDS);
+        assertTrue(pipeline.hasCompleted(Stage.LOAD));
+    }
+
+    @Test
+    void cancelledRunDoesNotMarkStageCompleted() {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.submit(Stage.LOAD, () -> {
+            throw new CancellationException("файл не выбран");
+        }).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof CancellationException);
+        assertFalse(pipeline.hasCompleted(Stage.LOAD));
+    }
+
+    @Test
+    void failedRunResetsCompletedStage() throws Exception {
+        pipeline.submit(Stage.LOAD, () -> { }).get(5, TimeUnit.SECONDS);
+        assertThrows(ExecutionException.class, () -> pipeline.submit(Stage.LOAD, () -> {
+            throw new IllegalStateException("ошибка разбора");
+        }).get(5, TimeUnit.SECONDS));
+        assertFalse(pipeline.hasCompleted(Stage.LOAD));
+    }
+
+    @Test
+    void cancelInterruptsOnlyTheCancelledRun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        pipeline.submit(Stage.LOAD, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.cancel(Stage.LOAD);
+
+        // Следующий этап выполняется в том же пуле и не должен получить чужое прерывание
+        AtomicBoolean nextInterrupted = new AtomicBoolean(true);
+        pipeline.submit(Stage.SAVE, () -> nextInterrupted.set(Thread.currentThread().isInterrupted()))
+                .get(5, TimeUnit.SECONDS);
+        assertTrue(interrupted.get());
+        assertFalse(nextInterrupted.get());
+    }
+}
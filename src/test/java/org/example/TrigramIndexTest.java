@@ -0,0 +1,154 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+    private static final String[] NAMES = {"Иванов", "Петров", "Сидорова", "Орлов", "Ковалёв", "Петровский"};
+    private static final String[][] QUERIES = {
+            {"0", "ов", "false"}, {"0", "п", "true"}, {"0", "петров", "false"}, {"0", "ров", "true"},
+            {"0", "Иванов 1", "false"}, {"1", "5А", "false"}, {"1", "1", "true"}, {"2", "4", "false"}};
+
+    private final Random random = new Random(42);
+    private final RecordStore store = RecordStore.forStudents();
+    private final TrigramIndex index = new TrigramIndex(3);
+
+    @Test
+    void singleDeletesAreDeferredAndSearchStaysExact() {
+        append(3000);
+        for (int i = 0; i < 500; i++) {
+            remove(new int[]{random.nextInt(store.size())});
+        }
+        // Одиночные удаления не проходят по спискам индекса
+        assertEquals(500, index.pendingRemovals());
+        assertSearchMatchesScan();
+
+        for (int i = 0; i < 300; i++) {
+            int row = random.nextInt(store.size());
+            String old = store.get(row, 0);
+            String value = name();
+            store.set(row, 0, value);
+            index.valueChanged(row, 0, old, value);
+        }
+        append(200);
+        assertSearchMatchesScan();
+    }
+
+    @Test
+    void accumulatedDeletesAreCompacted() {
+        append(TrigramIndex.COMPACT_MIN_REMOVED * 3);
+        for (int i = 0; i < 100; i++) {
+            remove(new int[]{random.nextInt(store.size())});
+        }
+        TreeSet<Integer> bulk = new TreeSet<>();
+        while (bulk.size() < TrigramIndex.COMPACT_MIN_REMOVED) {
+            bulk.add(random.nextInt(store.size()));
+        }
+        remove(bulk.stream().mapToInt(Integer::intValue).toArray());
+        assertEquals(0, index.pendingRemovals());
+        assertSearchMatchesScan();
+
+        remove(new int[]{0, 1, store.size() - 1});
+        append(50);
+        assertEquals(3, index.pendingRemovals());
+        assertSearchMatchesScan();
+    }
+
+    @Test
+    void concurrentSearchMatchesThePublishedSnapshot() throws Exception {
+        RecordTableModel model = new RecordTableModel(store, new String[]{"ФИО", "Класс", "Успеваемость"});
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < TrigramIndex.COMPACT_MIN_REMOVED * 2; i++) {
+            rows.add(new String[]{name(), "5А", "4"});
+        }
+        model.appendRows(rows);
+        AtomicReference<RecordSnapshot> published = new AtomicReference<>(store.snapshot());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Поток-владелец удаляет, добавляет и правит строки, публикуя снимок после каждого изменения
+        Thread owner = new Thread(() -> {
+            Random ownerRandom = new Random(7);
+            try {
+                for (int i = 0; i < 3000; i++) {
+                    if (i % 1000 == 999) {
+                        TreeSet<Integer> bulk = new TreeSet<>();
+                        while (bulk.size() < TrigramIndex.COMPACT_MIN_REMOVED) {
+                            bulk.add(ownerRandom.nextInt(store.size()));
+                        }
+                        model.removeRows(bulk.stream().mapToInt(Integer::intValue).toArray());
+                        model.appendRows(rows.subList(0, TrigramIndex.COMPACT_MIN_REMOVED));
+                    } else {
+                        model.removeRows(new int[]{ownerRandom.nextInt(store.size())});
+                        model.addRow(new String[]{NAMES[ownerRandom.nextInt(NAMES.length)], "6Б", "5"});
+                        model.setValueAt(NAMES[ownerRandom.nextInt(NAMES.length)] + " " + i, ownerRandom.nextInt(store.size()), 0);
+                    }
+                    published.set(store.snapshot());
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "OwnerThread");
+        owner.start();
+
+        int checked = 0;
+        while (owner.isAlive()) {
+            RecordSnapshot snapshot = published.get();
+            for (String[] query : QUERIES) {
+                int column = Integer.parseInt(query[0]);
+                boolean prefix = Boolean.parseBoolean(query[2]);
+                BitSet found = model.find(snapshot, column, query[1], prefix);
+                if (found != null) {
+                    assertEquals(scan(snapshot, column, query[1], prefix), found, query[1] + " prefix=" + prefix);
+                    checked++;
+                }
+            }
+        }
+        owner.join();
+        assertNull(failure.get());
+        assertTrue(checked > 0);
+    }
+
+    private void append(int count) {
+        int from = store.size();
+        for (int i = 0; i < count; i++) {
+            store.add(new String[]{name(), (1 + random.nextInt(11)) + "АБ".substring(i % 2, i % 2 + 1), String.valueOf(2 + random.nextInt(4))});
+        }
+        index.rowsAppended(store, from, store.size());
+    }
+
+    private void remove(int[] sortedRows) {
+        store.removeRows(sortedRows);
+        index.rowsRemoved(sortedRows);
+    }
+
+    private String name() {
+        return NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(20);
+    }
+
+    private void assertSearchMatchesScan() {
+        for (String[] query : QUERIES) {
+            int column = Integer.parseInt(query[0]);
+            boolean prefix = Boolean.parseBoolean(query[2]);
+            assertEquals(scan(store, column, query[1], prefix), index.find(store, column, query[1], prefix), query[1] + " prefix=" + prefix);
+        }
+    }
+
+    private static BitSet scan(RecordSource source, int column, String query, boolean prefix) {
+        BitSet expected = new BitSet();
+        for (int row = 0; row < source.size(); row++) {
+            if (TrigramIndex.matches(source.get(row, column), query, prefix)) {
+                expected.set(row);
+            }
+        }
+        return expected;
+    }
+}